@@ -0,0 +1,203 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link DeadlinePolicy} that learns how the run time of each {@link Variant} grows with the input size, and sets
+ * the time limit to a multiple of the predicted run time.
+ *
+ * The run time is modelled as {@code t = c * n^k}, which covers both O(n log n) and O(n^2) sorts well enough over a
+ * few orders of magnitude. {@code c} and {@code k} are fitted per variant name by least squares on
+ * {@code log t = log c + k * log n}, over a sliding window of the most recent acceptable runs. Until a variant has
+ * enough samples, it gets the default time limit.
+ *
+ * A timed out run leaves no sample, since its run time is unknown, so the fit alone would keep the limit that was
+ * too short. Instead, every timeout doubles the variant's time limits, up to the maximum, and every acceptable run
+ * halves them back, down to the learned ones. Thread safe.
+ */
+public class AdaptiveDeadlinePolicy implements DeadlinePolicy {
+    private static final double SAME_SIZE_EPSILON = 1e-9;
+    // Keeps the back-off from growing without bounds, long after the maximum time limit is reached
+    private static final double MAX_BACKOFF = 1 << 20;
+
+    private final long defaultTimeLimitMilliseconds;
+    private final long minimumTimeLimitMilliseconds;
+    private final long maximumTimeLimitMilliseconds;
+    private final double safetyFactor;
+    private final int windowSize;
+    private final int minimumSamples;
+    // Guarded by 'this'
+    private final Map<String, CurveFit> fits = new HashMap<>();
+    // The multiple of the time limit, for the variants that timed out recently
+    private final Map<String, Double> backoffs = new HashMap<>();
+
+    /**
+     * Creates an {@link AdaptiveDeadlinePolicy} object.
+     * @param defaultTimeLimitMilliseconds The time limit used until a variant has enough samples.
+     * @param minimumTimeLimitMilliseconds The lower bound for the learned time limits.
+     * @param maximumTimeLimitMilliseconds The upper bound for the learned time limits.
+     * @param safetyFactor The multiple of the predicted run time given as the time limit. Should leave room for the
+     *                     run time variance, e.g. 3.
+     * @param windowSize The number of most recent samples kept per variant.
+     * @param minimumSamples The number of samples needed before the time limit is learned.
+     * @throws IllegalArgumentException Thrown if the time limits are negative or not in order, the
+     *                                  {@code safetyFactor} is less than 1, or the sample counts are invalid.
+     */
+    public AdaptiveDeadlinePolicy(long defaultTimeLimitMilliseconds,
+                                  long minimumTimeLimitMilliseconds,
+                                  long maximumTimeLimitMilliseconds,
+                                  double safetyFactor,
+                                  int windowSize,
+                                  int minimumSamples) throws IllegalArgumentException {
+        if (minimumTimeLimitMilliseconds < 0 || defaultTimeLimitMilliseconds < minimumTimeLimitMilliseconds ||
+                maximumTimeLimitMilliseconds < defaultTimeLimitMilliseconds) {
+            throw new IllegalArgumentException("The time limits can't be negative, and need to be in the minimum, "
+                    + "default, maximum order.");
+        }
+        if (safetyFactor < 1.0) {
+            throw new IllegalArgumentException("The safety factor can't be less than 1.");
+        }
+        if (windowSize < 2 || minimumSamples < 2 || minimumSamples > windowSize) {
+            throw new IllegalArgumentException("The minimum number of samples needs to be between 2 and the window "
+                    + "size.");
+        }
+        this.defaultTimeLimitMilliseconds = defaultTimeLimitMilliseconds;
+        this.minimumTimeLimitMilliseconds = minimumTimeLimitMilliseconds;
+        this.maximumTimeLimitMilliseconds = maximumTimeLimitMilliseconds;
+        this.safetyFactor = safetyFactor;
+        this.windowSize = windowSize;
+        this.minimumSamples = minimumSamples;
+    }
+
+    /**
+     * Creates an {@link AdaptiveDeadlinePolicy} object with a safety factor of 3, that fits the 64 most recent
+     * samples, once there are at least 8.
+     * @param defaultTimeLimitMilliseconds The time limit used until a variant has enough samples.
+     * @param minimumTimeLimitMilliseconds The lower bound for the learned time limits.
+     * @param maximumTimeLimitMilliseconds The upper bound for the learned time limits.
+     * @throws IllegalArgumentException Thrown if the time limits are negative or not in order.
+     */
+    public AdaptiveDeadlinePolicy(long defaultTimeLimitMilliseconds,
+                                  long minimumTimeLimitMilliseconds,
+                                  long maximumTimeLimitMilliseconds) throws IllegalArgumentException {
+        this(defaultTimeLimitMilliseconds, minimumTimeLimitMilliseconds, maximumTimeLimitMilliseconds, 3.0, 64, 8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getTimeLimitMilliseconds(Variant<?> variant, int inputSize) {
+        CurveFit fit = fits.get(variant.getName());
+        double predictedNanos = fit == null ? -1 : fit.predictNanos(inputSize);
+        Double backoff = backoffs.get(variant.getName());
+        double timeLimitMilliseconds = predictedNanos < 0 ? defaultTimeLimitMilliseconds :
+                Math.max(minimumTimeLimitMilliseconds, Math.ceil(safetyFactor * predictedNanos / 1e6));
+        if (backoff != null) {
+            timeLimitMilliseconds *= backoff;
+        }
+        return (long) Math.min(maximumTimeLimitMilliseconds, timeLimitMilliseconds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void recordRunTime(Variant<?> variant, int inputSize, long runTimeNanos) {
+        CurveFit fit = fits.get(variant.getName());
+        if (fit == null) {
+            fit = new CurveFit();
+            fits.put(variant.getName(), fit);
+        }
+        fit.add(inputSize, runTimeNanos);
+
+        Double backoff = backoffs.get(variant.getName());
+        if (backoff != null) {
+            if (backoff > 2) {
+                backoffs.put(variant.getName(), backoff / 2);
+            } else {
+                backoffs.remove(variant.getName());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void recordTimeout(Variant<?> variant, int inputSize) {
+        Double backoff = backoffs.get(variant.getName());
+        backoffs.put(variant.getName(), backoff == null ? 2 : Math.min(MAX_BACKOFF, backoff * 2));
+    }
+
+    /**
+     * A sliding window of (log n, log t) samples for a single variant.
+     */
+    private class CurveFit {
+        private final double[] logSizes = new double[windowSize];
+        private final double[] logRunTimes = new double[windowSize];
+        private int count = 0;
+        private int next = 0;
+
+        public void add(int inputSize, long runTimeNanos) {
+            logSizes[next] = logOf(inputSize);
+            logRunTimes[next] = logOf(runTimeNanos);
+            next = (next + 1) % windowSize;
+            count = Math.min(count + 1, windowSize);
+        }
+
+        /**
+         * Predicts the run time for an input size.
+         * @param inputSize The input size.
+         * @return The predicted run time in nanoseconds, or -1 if it can't be predicted yet.
+         */
+        public double predictNanos(int inputSize) {
+            if (count < minimumSamples) {
+                return -1;
+            }
+
+            double meanLogSize = 0;
+            double meanLogRunTime = 0;
+            for (int i = 0; i < count; ++i) {
+                meanLogSize += logSizes[i];
+                meanLogRunTime += logRunTimes[i];
+            }
+            meanLogSize /= count;
+            meanLogRunTime /= count;
+
+            double covariance = 0;
+            double variance = 0;
+            for (int i = 0; i < count; ++i) {
+                double dx = logSizes[i] - meanLogSize;
+                covariance += dx * (logRunTimes[i] - meanLogRunTime);
+                variance += dx * dx;
+            }
+
+            double logSize = logOf(inputSize);
+            if (variance < SAME_SIZE_EPSILON) {
+                // All the samples are for the same input size, so the growth rate is unknown. Only predict for
+                // inputs of about that size.
+                return Math.abs(logSize - meanLogSize) <= Math.log(2) ? Math.exp(meanLogRunTime) : -1;
+            }
+
+            double exponent = covariance / variance;
+            return Math.exp(meanLogRunTime + exponent * (logSize - meanLogSize));
+        }
+
+        private double logOf(long value) {
+            return Math.log(Math.max(1, value));
+        }
+    }
+}
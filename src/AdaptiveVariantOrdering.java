@@ -0,0 +1,154 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Reorders the {@link Variant}s of a {@link RecoveryBlocksExecutor} based on how they have been doing recently, so
+ * that the variant with the lowest expected time to an acceptable result is tried first.
+ *
+ * Keeps a sliding window of outcomes per variant name: whether the result was accepted, and how long the run took
+ * (including failed and timed out runs). When trying the variants one after another, the expected time to an
+ * acceptable result is minimised by ordering them by {@code meanRunTime / acceptanceRate}, ascending.
+ *
+ * Until every variant has enough samples, and on a small fraction of the jobs (so that a variant that has been
+ * pushed back gets a chance to show that it has recovered), the configured order is kept. Thread safe.
+ */
+public class AdaptiveVariantOrdering {
+    private final int windowSize;
+    private final int minimumSamples;
+    private final double explorationProbability;
+    private final Random random = new Random();
+    // Guarded by 'this'
+    private final Map<String, OutcomeWindow> windows = new HashMap<>();
+
+    /**
+     * Creates an {@link AdaptiveVariantOrdering} object.
+     * @param windowSize The number of most recent outcomes kept per variant.
+     * @param minimumSamples The number of outcomes needed per variant before the variants are reordered.
+     * @param explorationProbability The fraction of jobs on which the configured order is kept anyway.
+     * @throws IllegalArgumentException Thrown if {@code minimumSamples} is not between 1 and {@code windowSize}, or
+     *                                  {@code explorationProbability} is not between 0 and 1.
+     */
+    public AdaptiveVariantOrdering(int windowSize, int minimumSamples, double explorationProbability)
+            throws IllegalArgumentException {
+        if (minimumSamples <= 0 || minimumSamples > windowSize) {
+            throw new IllegalArgumentException("The minimum number of samples needs to be between 1 and the window "
+                    + "size.");
+        }
+        if (explorationProbability < 0.0 || explorationProbability > 1.0) {
+            throw new IllegalArgumentException("The exploration probability needs to be between 0 and 1.");
+        }
+        this.windowSize = windowSize;
+        this.minimumSamples = minimumSamples;
+        this.explorationProbability = explorationProbability;
+    }
+
+    /**
+     * Creates an {@link AdaptiveVariantOrdering} object that keeps the 100 most recent outcomes per variant, needs 10
+     * of them before reordering, and keeps the configured order on 5% of the jobs.
+     */
+    public AdaptiveVariantOrdering() {
+        this(100, 10, 0.05);
+    }
+
+    /**
+     * Records the outcome of a run of a {@link Variant}.
+     * @param variant The {@link Variant} that was run.
+     * @param accepted Whether the {@code variant} produced an acceptable result.
+     * @param runTimeNanos The run time in nanoseconds, until the {@code variant} finished, failed or timed out.
+     */
+    public synchronized void recordOutcome(Variant<?> variant, boolean accepted, long runTimeNanos) {
+        OutcomeWindow window = windows.get(variant.getName());
+        if (window == null) {
+            window = new OutcomeWindow(windowSize);
+            windows.put(variant.getName(), window);
+        }
+        window.add(accepted, runTimeNanos);
+    }
+
+    /**
+     * Orders the {@link Variant}s by their expected time to an acceptable result.
+     * @param variants The {@link Variant}s in their configured order.
+     * @param <T> The result type of the variants.
+     * @return A new list with the {@code variants} in the order in which they should be tried.
+     */
+    public synchronized <T> List<Variant<T>> order(List<Variant<T>> variants) {
+        List<Variant<T>> ordered = new ArrayList<>(variants);
+        if (random.nextDouble() < explorationProbability) {
+            return ordered;
+        }
+
+        final Map<Variant<T>, Double> costs = new HashMap<>();
+        for (Variant<T> variant : variants) {
+            OutcomeWindow window = windows.get(variant.getName());
+            if (window == null || window.count < minimumSamples) {
+                return ordered;
+            }
+            costs.put(variant, window.getExpectedCostNanos());
+        }
+
+        // Stable, so that equally good variants keep their configured order
+        Collections.sort(ordered, new Comparator<Variant<T>>() {
+            @Override
+            public int compare(Variant<T> first, Variant<T> second) {
+                return Double.compare(costs.get(first), costs.get(second));
+            }
+        });
+        return ordered;
+    }
+
+    /**
+     * A ring buffer of the most recent outcomes of a single variant.
+     */
+    private static class OutcomeWindow {
+        private final boolean[] accepted;
+        private final long[] runTimesNanos;
+        private int count = 0;
+        private int next = 0;
+
+        public OutcomeWindow(int size) {
+            accepted = new boolean[size];
+            runTimesNanos = new long[size];
+        }
+
+        public void add(boolean wasAccepted, long runTimeNanos) {
+            accepted[next] = wasAccepted;
+            runTimesNanos[next] = runTimeNanos;
+            next = (next + 1) % accepted.length;
+            count = Math.min(count + 1, accepted.length);
+        }
+
+        /**
+         * The mean run time divided by the acceptance rate, i.e. the expected time spent in this variant per
+         * acceptable result.
+         */
+        public double getExpectedCostNanos() {
+            int acceptedCount = 0;
+            double totalRunTimeNanos = 0;
+            for (int i = 0; i < count; ++i) {
+                acceptedCount += accepted[i] ? 1 : 0;
+                totalRunTimeNanos += runTimesNanos[i];
+            }
+            // Laplace smoothing, so that a variant that hasn't succeeded lately doesn't get an infinite cost
+            double acceptanceRate = (acceptedCount + 1.0) / (count + 2.0);
+            return (totalRunTimeNanos / count) / acceptanceRate;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link FailureModel} for correlated failures, e.g. a failing memory module: accesses fail at a constant base
+ * rate, but every failure starts a burst with some probability, in which the next failure follows after only a few
+ * accesses. Bursts can chain, so their lengths are geometric too.
+ */
+public final class BurstFailureModel implements FailureModel {
+    private final double failureProbability;
+    private final double logSurvival;
+    private final double burstProbability;
+    private final double meanBurstGap;
+    private final double logBurstSurvival;
+
+    /**
+     * Creates a {@link BurstFailureModel} object.
+     * @param failureProbability The failure probability of an access outside a burst. 0, for no failures.
+     * @param burstProbability The probability that a failure is followed by another one within a burst.
+     * @param meanBurstGap The mean number of accesses between two failures within a burst.
+     * @throws IllegalArgumentException Thrown if a probability is not between 0 and 1, or the gap is less than 1.
+     */
+    public BurstFailureModel(double failureProbability, double burstProbability, double meanBurstGap)
+            throws IllegalArgumentException {
+        if (failureProbability > 1.0 || failureProbability < 0.0 || burstProbability > 1.0 ||
+                burstProbability < 0.0) {
+            throw new IllegalArgumentException("Failure Probability needs to be between 0 and 1.");
+        }
+        if (!(meanBurstGap >= 1.0)) {
+            throw new IllegalArgumentException("The mean burst gap needs to be at least 1 access.");
+        }
+        this.failureProbability = failureProbability;
+        this.logSurvival = Math.log1p(-failureProbability);
+        this.burstProbability = burstProbability;
+        this.meanBurstGap = meanBurstGap;
+        this.logBurstSurvival = Math.log1p(-1.0 / meanBurstGap);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextFailureAccess(long accessCount, double uniform) {
+        if (failureProbability == 0.0) {
+            return Long.MAX_VALUE;
+        }
+        // One uniform decides both whether a burst goes on, and the gap: each part rescaled to (0, 1]
+        long gap;
+        if (accessCount > 0 && uniform <= burstProbability) {
+            gap = ConstantRateFailureModel.geometricGap(uniform / burstProbability, 1.0 / meanBurstGap,
+                    logBurstSurvival);
+        } else {
+            double u = accessCount > 0 ? (uniform - burstProbability) / (1.0 - burstProbability) : uniform;
+            gap = ConstantRateFailureModel.geometricGap(u, failureProbability, logSurvival);
+        }
+        return gap >= Long.MAX_VALUE - accessCount ? Long.MAX_VALUE : accessCount + gap;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "burst(" + failureProbability + ", " + burstProbability + ", " + meanBurstGap + ")";
+    }
+}
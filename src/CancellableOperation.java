@@ -0,0 +1,28 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An extension interface of the {@link Operation} for operations that can be stopped cooperatively through a
+ * {@link CancellationToken}. The {@link RecoveryBlocksExecutor} cancels the token of a {@link Variant} that
+ * exceeds its time limit, or loses a race.
+ */
+public interface CancellableOperation<T> extends Operation<T> {
+    /**
+     * Execute the operation, polling the {@code cancellationToken} regularly.
+     * @param cancellationToken The token through which the operation is asked to stop.
+     * @return The operation's results.
+     * @throws java.util.concurrent.CancellationException Thrown if the operation gave up because the
+     *                                                    {@code cancellationToken} was cancelled.
+     */
+    T execute(CancellationToken cancellationToken);
+}
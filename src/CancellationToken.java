@@ -0,0 +1,72 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A flag through which a {@link CancellableOperation} is asked to stop. The operation is expected to poll it
+ * regularly, and give up with a {@link CancellationException} once it's set.
+ *
+ * The flag can also be shared with native code as a direct buffer holding a single native-order int, which becomes
+ * non-zero on cancellation. See {@link #getNativeFlag()}.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+    // Guarded by 'this'. Only allocated if a native operation asks for it.
+    private ByteBuffer nativeFlag = null;
+
+    /**
+     * Asks the operation holding this token to stop. Has no effect if it's already cancelled.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            if (nativeFlag != null) {
+                nativeFlag.putInt(0, 1);
+            }
+        }
+    }
+
+    /**
+     * True, if {@link #cancel()} has been called, else false.
+     * @return True, if {@link #cancel()} has been called, else false.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if {@link #cancel()} has been called.
+     * @throws CancellationException Thrown if the token has been cancelled.
+     */
+    public void throwIfCancelled() throws CancellationException {
+        if (cancelled) {
+            throw new CancellationException("Cancelled.");
+        }
+    }
+
+    /**
+     * Gets the flag to be polled by native code. It's a direct buffer holding a single native-order int, which is 0
+     * until the token is cancelled.
+     * @return The direct buffer flag.
+     */
+    public synchronized ByteBuffer getNativeFlag() {
+        if (nativeFlag == null) {
+            nativeFlag = ByteBuffer.allocateDirect(4).order(ByteOrder.nativeOrder());
+            nativeFlag.putInt(0, cancelled ? 1 : 0);
+        }
+        return nativeFlag;
+    }
+}
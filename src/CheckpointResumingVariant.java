@@ -0,0 +1,97 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A {@link Variant} for sorting an int array, that resumes from the {@link SortCheckpoint} left behind by an earlier
+ * variant of the same recovery block. If a checkpoint can be restored, only its unsorted prefix is sorted, by a
+ * variant created for it; otherwise the wrapped variant sorts the whole input.
+ */
+public class CheckpointResumingVariant implements CancellableOperation<int[]>, SizedOperation<int[]>,
+        Variant<int[]> {
+    private final Variant<int[]> variant;
+    private final int[] data;
+    private final SortCheckpoint checkpoint;
+    private final OperationFactory<int[]> prefixSorterFactory;
+
+    /**
+     * Creates a {@link CheckpointResumingVariant} object.
+     * @param variant The variant for sorting the whole {@code data}, if there's no checkpoint.
+     * @param data The input of the {@code variant}. Not modified, unless the {@code variant} sorts it in place.
+     * @param checkpoint The checkpoint shared with the earlier variants.
+     * @param prefixSorterFactory Creates the operation that sorts the unsorted prefix of a restored checkpoint. Its
+     *                            {@link CancellationToken} is the one of this variant, if it's a
+     *                            {@link CancellableOperation}.
+     * @throws IllegalArgumentException Thrown if any of the arguments is null.
+     */
+    public CheckpointResumingVariant(Variant<int[]> variant, int[] data, SortCheckpoint checkpoint,
+                                     OperationFactory<int[]> prefixSorterFactory) throws IllegalArgumentException {
+        if (variant == null || data == null || checkpoint == null || prefixSorterFactory == null) {
+            throw new IllegalArgumentException("The variant, data, checkpoint and prefix sorter factory can't be " +
+                    "null.");
+        }
+        this.variant = variant;
+        this.data = data;
+        this.checkpoint = checkpoint;
+        this.prefixSorterFactory = prefixSorterFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return variant.getName();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        int[] restored = new int[data.length];
+        int sortedFrom = checkpoint.restore(data, restored);
+        if (sortedFrom == data.length) {
+            return execute(variant, cancellationToken);
+        }
+        if (sortedFrom > 0) {
+            int[] sortedPrefix = execute(prefixSorterFactory.create(Arrays.copyOf(restored, sortedFrom), 0),
+                    cancellationToken);
+            System.arraycopy(sortedPrefix, 0, restored, 0, sortedFrom);
+        }
+        return restored;
+    }
+
+    private static int[] execute(Operation<int[]> operation, CancellationToken cancellationToken) {
+        return operation instanceof CancellableOperation ?
+                ((CancellableOperation<int[]>) operation).execute(cancellationToken) :
+                operation.execute();
+    }
+}
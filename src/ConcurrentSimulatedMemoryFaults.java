@@ -0,0 +1,175 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe {@link MemoryFaults}, for a fault-injected collection shared by many threads, e.g. the workers of a
+ * parallel sort. The hazard is global: the n-th access over all the threads fails as it would in a single thread
+ * with the same {@link SimulatedMemoryFaults}.
+ *
+ * Counting every access on one shared counter would make all the threads contend for its cache line, so the counts
+ * are striped per thread instead. A thread claims the global access indices in blocks from a shared counter, and
+ * counts through its block locally. The failure points are drawn once, in order, from the
+ * {@link SimulatedMemoryFaults}, and only looked up when a thread claims a block, or fails; that's lock free unless
+ * new failure points need to be drawn. So an access is a thread local increment and a comparison, and the threads
+ * only touch shared state once per block. Looking up the calling thread's count on every access still costs a
+ * {@link ThreadLocal} lookup, which hot loops can hoist out through {@link #forCurrentThread()}.
+ *
+ * The indices left in the blocks of threads that stop accessing are skipped, along with any failure points in
+ * them, which moves the later accesses further along the hazard. To keep that skew small for short-lived threads,
+ * a thread's first block is {@value #MIN_BLOCK_SIZE} indices, and each of its blocks doubles, up to
+ * {@value #MAX_BLOCK_SIZE}. So a thread never leaves more indices unused than it has accessed, plus
+ * {@value #MIN_BLOCK_SIZE}, and at most {@value #MAX_BLOCK_SIZE}.
+ */
+public final class ConcurrentSimulatedMemoryFaults implements MemoryFaults {
+    private static final int MIN_BLOCK_SIZE = 16;
+    private static final int MAX_BLOCK_SIZE = 1024;
+
+    // Guarded by itself; draws the failure points
+    private final SimulatedMemoryFaults failureSource;
+    private final AtomicLong claimedAccesses = new AtomicLong();
+    private volatile FailurePoints failurePoints;
+    private final ThreadLocal<Stripe> stripes = new ThreadLocal<Stripe>() {
+        @Override
+        protected Stripe initialValue() {
+            return new Stripe();
+        }
+    };
+
+    /**
+     * Creates a {@link ConcurrentSimulatedMemoryFaults} object with a random seed.
+     * @param failureProbability The failure probability of an access, which grows with the number of accesses over
+     *                           all the threads.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public ConcurrentSimulatedMemoryFaults(double failureProbability) throws IllegalArgumentException {
+        this(new SimulatedMemoryFaults(failureProbability));
+    }
+
+    /**
+     * Creates a {@link ConcurrentSimulatedMemoryFaults} object that fails at the failure points of the
+     * {@code failureSource}, e.g. one from a {@link FaultSchedule}. Which thread hits a failure point is up to the
+     * threads' timing.
+     * @param failureSource The faults drawing the failure points. Owned by this object from here on.
+     * @throws IllegalArgumentException Thrown if the {@code failureSource} is null.
+     */
+    public ConcurrentSimulatedMemoryFaults(SimulatedMemoryFaults failureSource) throws IllegalArgumentException {
+        if (failureSource == null) {
+            throw new IllegalArgumentException("The failure source can't be null.");
+        }
+        this.failureSource = failureSource;
+        this.failurePoints = new FailurePoints(new long[] {failureSource.getFailureAccess()}, 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void access() throws MemoryAccessFailureException {
+        stripes.get().access();
+    }
+
+    /**
+     * Gets the faults of the calling thread, which count towards the same global hazard. Accessing through them
+     * skips the thread lookup of {@link #access()}, e.g. for the inner loops of a task that runs on a single thread.
+     * @return The calling thread's {@link MemoryFaults}. Not thread safe; only to be used by the calling thread.
+     */
+    public MemoryFaults forCurrentThread() {
+        return stripes.get();
+    }
+
+    /**
+     * Gets the number of global access indices claimed by the threads so far. An upper bound of the number of
+     * accesses, off by at most the last block of each thread.
+     * @return The number of claimed indices.
+     */
+    public long getClaimedAccessCount() {
+        return claimedAccesses.get();
+    }
+
+    /**
+     * Finds the first failure point at or after the {@code access}, or {@link Long#MAX_VALUE} if there's none.
+     */
+    private long firstFailureFrom(long access) {
+        FailurePoints points = failurePoints;
+        if (points.last() < access) {
+            points = drawFailuresUntil(access);
+        }
+        int index = Arrays.binarySearch(points.accesses, 0, points.count, access);
+        return points.accesses[index >= 0 ? index : -index - 1];
+    }
+
+    private FailurePoints drawFailuresUntil(long access) {
+        synchronized (failureSource) {
+            FailurePoints points = failurePoints;
+            long[] accesses = points.accesses;
+            int count = points.count;
+            long last = points.last();
+            while (last < access) {
+                last = failureSource.skipToNextFailure();
+                if (count == accesses.length) {
+                    accesses = Arrays.copyOf(accesses, count * 2);
+                }
+                // The older snapshots never read past their own count, so appending in place is safe
+                accesses[count++] = last;
+            }
+            failurePoints = new FailurePoints(accesses, count);
+            return failurePoints;
+        }
+    }
+
+    /**
+     * An immutable prefix of the failure points drawn so far. Ends with {@link Long#MAX_VALUE} once there are none
+     * left.
+     */
+    private static final class FailurePoints {
+        private final long[] accesses;
+        private final int count;
+
+        private FailurePoints(long[] accesses, int count) {
+            this.accesses = accesses;
+            this.count = count;
+        }
+
+        private long last() {
+            return accesses[count - 1];
+        }
+    }
+
+    /**
+     * The block of global access indices a thread is counting through.
+     */
+    private final class Stripe implements MemoryFaults {
+        private long nextAccess = 0;
+        private long blockEnd = 0;
+        private long failureAccess = Long.MAX_VALUE;
+        // The size of the next block claimed
+        private int blockSize = MIN_BLOCK_SIZE;
+
+        @Override
+        public void access() throws MemoryAccessFailureException {
+            if (nextAccess == blockEnd) {
+                nextAccess = claimedAccesses.getAndAdd(blockSize) + 1;
+                blockEnd = nextAccess + blockSize;
+                blockSize = Math.min(blockSize * 2, MAX_BLOCK_SIZE);
+                failureAccess = firstFailureFrom(nextAccess);
+            }
+            if (nextAccess++ == failureAccess) {
+                failureAccess = firstFailureFrom(nextAccess);
+                throw new MemoryAccessFailureException("Random simulated failure event.");
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link FailureModel} in which every access fails with the same probability, independent of the others, like
+ * random soft errors. The gaps between the failures are geometric.
+ */
+public final class ConstantRateFailureModel implements FailureModel {
+    private final double failureProbability;
+    // ln(1 - p), the log of the probability that an access survives
+    private final double logSurvival;
+
+    /**
+     * Creates a {@link ConstantRateFailureModel} object.
+     * @param failureProbability The failure probability of every access. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public ConstantRateFailureModel(double failureProbability) throws IllegalArgumentException {
+        if (failureProbability > 1.0 || failureProbability < 0.0) {
+            throw new IllegalArgumentException("Failure Probability needs to be between 0 and 1.");
+        }
+        this.failureProbability = failureProbability;
+        this.logSurvival = Math.log1p(-failureProbability);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextFailureAccess(long accessCount, double uniform) {
+        long gap = geometricGap(uniform, failureProbability, logSurvival);
+        return gap >= Long.MAX_VALUE - accessCount ? Long.MAX_VALUE : accessCount + gap;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "constant(" + failureProbability + ")";
+    }
+
+    /**
+     * Draws the number of accesses up to and including the next failure, if each fails with the same probability.
+     * @param logSurvival {@code Math.log1p(-failureProbability)}, precomputed.
+     * @return The gap, at least 1, or {@link Long#MAX_VALUE} if no access will ever fail.
+     */
+    static long geometricGap(double uniform, double failureProbability, double logSurvival) {
+        if (failureProbability == 0.0) {
+            return Long.MAX_VALUE;
+        }
+        if (failureProbability == 1.0) {
+            return 1;
+        }
+        double gap = Math.ceil(Math.log(uniform) / logSurvival);
+        // A uniform of exactly 1 gives 0
+        return Math.max(1, gap >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) gap);
+    }
+}
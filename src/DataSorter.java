@@ -12,23 +12,22 @@
  */
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The main class for the Data Sorter application.
  */
 public class DataSorter {
-    private static final AcceptanceTest<List<Integer>> SORT_ACCEPTANCE_TEST
-        = new AcceptanceTest<List<Integer>>() {
+    private static final AcceptanceTest<int[]> SORT_ACCEPTANCE_TEST
+        = new AcceptanceTest<int[]>() {
             @Override
-            public boolean testResult(List<Integer> result) {
-                Integer previous = null;
-
-                for (Integer i : result) {
-                    if (previous == null || i.compareTo(previous) >= 0) {
-                        previous = i;
-                    } else {
+            public boolean testResult(int[] result) {
+                for (int i = 1; i < result.length; ++i) {
+                    if (result[i] < result[i - 1]) {
                         return false;
                     }
                 }
@@ -37,37 +36,172 @@ public class DataSorter {
             }
         };
 
+    private static final String HEAP_SORT = "heap";
+    private static final String MERGE_SORT = "merge";
+    private static final String RADIX_SORT = "radix";
+    private static final String INSERTION_SORT = "insertion";
+    private static final String INTROSORT = "introsort";
+
+    private static final String LINEAR_FAILURE_MODEL = "linear";
+    private static final String CONSTANT_FAILURE_MODEL = "constant";
+    private static final String WEIBULL_FAILURE_MODEL = "weibull";
+    private static final String BURST_FAILURE_MODEL = "burst";
+
+    private static final String FIXED_DEADLINE = "fixed";
+    private static final String ADAPTIVE_DEADLINE = "adaptive";
+
+    private static final String FIXED_ORDER = "fixed";
+    private static final String ADAPTIVE_ORDER = "adaptive";
+
+    // Only useful for the hedged mode if many files are sorted in the same process
+    private static final LatencyHistory LATENCY_HISTORY = new LatencyHistory(128, 16);
+    private static final double HEDGING_PERCENTILE = 0.95;
+    // The bounds of the adaptive time limits. The given time limit is used until a variant has enough samples.
+    private static final long ADAPTIVE_MINIMUM_TIME_LIMIT_MILLISECONDS = 10;
+    private static final long ADAPTIVE_MAXIMUM_TIME_LIMIT_FACTOR = 10;
+    // Shared by all the recovery blocks, like the latency history
+    private static final AdaptiveVariantOrdering VARIANT_ORDERING = new AdaptiveVariantOrdering();
+    private static final long RESULT_CACHE_MEMORY_BYTES = 64L * 1024 * 1024;
+    // Exposed over JMX, e.g. for watching long sorts in jconsole
+    private static final MetricsRegistry METRICS_REGISTRY = new MetricsRegistry("FaultTolerantSort");
+    // Next to the output, so that rerunning the same command resumes an external sort
+    private static final String EXTERNAL_WORK_DIRECTORY_SUFFIX = ".runs";
+    private static final int MAX_ATTEMPTS_PER_PARTITION = 3;
+    // Runs the recovery blocks of the partitions; their variants still run on the variant worker pool
+    private static final ExecutorService PARTITION_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new NamedDaemonThreadFactory("partition"));
+
     public static void main(String[] _args) {
         try {
             DataSorterArgs args = new DataSorterArgs(_args);
-            List<Integer> numbers = FileIOUtils.readFromFile(args.inputFile, FileIOUtils.STRING_TO_INTEGER_CONVERTER);
-            RandomlyFailingList<Integer> randomlyFailingNumbers = new RandomlyFailingList<>(numbers,
-                    args.primaryFailureProbability);
-            Variant<List<Integer>> primaryVariant = new HeapSortOperation<>(randomlyFailingNumbers);
-            Variant<List<Integer>> backupVariant = new NativeInsertionSortOperation(numbers,
-                    args.backupFailureProbability);
-
-            // Annotation needed because of possible unsafe use of varargs. Safe here
-            @SuppressWarnings({"unchecked"})
-            RecoveryBlocksExecutor<List<Integer>> executive = new RecoveryBlocksExecutor<>(
-                    args.timeLimitMilliseconds,
-                    SORT_ACCEPTANCE_TEST,
-                    primaryVariant,
-                    backupVariant);
-            // Create a new list, because if the primary passed, sorted will be a RandomlyFailingList
-            // We don't want any more failures now
-            List<Integer> sorted = new ArrayList<>(executive.execute());
-            FileIOUtils.writeToFile(args.outputFile, sorted, FileIOUtils.INTEGER_TO_STRING_CONVERTER);
+            if (args.metricsPeriodMilliseconds > 0) {
+                METRICS_REGISTRY.startPeriodicDump(System.err, args.metricsPeriodMilliseconds);
+            }
+            try {
+                sort(args);
+            } finally {
+                if (args.metricsPeriodMilliseconds > 0) {
+                    // A last report, so that a sort shorter than the period still gets one
+                    METRICS_REGISTRY.stopPeriodicDump();
+                    System.err.print(METRICS_REGISTRY.getReport());
+                }
+                if (args.faultRecordFile != null) {
+                    // Also after a failed sort, so that its failures can be replayed
+                    args.faultSchedule.save(Paths.get(args.faultRecordFile));
+                }
+            }
         }
         catch (IOException e) {
             System.err.println(String.format("IOException encountered when reading/writing from/to file: %s",
                     e.getMessage()));
         }
-        catch (IllegalArgumentException | RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException e) {
+        catch (IllegalArgumentException | UnsupportedOperationException |
+                RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException e) {
             System.err.println(e.getMessage());
         }
     }
 
+    private static void sort(final DataSorterArgs args) throws IOException {
+        if (args.externalMemoryBudgetBytes > 0) {
+            // The input is never loaded as a whole; every chunk gets its own recovery block
+            ExternalMergeSorter sorter = new ExternalMergeSorter(args.externalMemoryBudgetBytes,
+                    Paths.get(args.outputFile + EXTERNAL_WORK_DIRECTORY_SUFFIX), new OperationFactory<int[]>() {
+                        @Override
+                        public Operation<int[]> create(int[] chunk, long offset) {
+                            return createSortOperation(args, chunk, offset);
+                        }
+                    });
+            sorter.sort(Paths.get(args.inputFile), Paths.get(args.outputFile));
+            return;
+        }
+
+        int[] numbers = FileIOUtils.readIntsFromFile(args.inputFile);
+        Operation<int[]> sortOperation = createSortOperation(args, numbers, 0);
+        int[] sorted;
+        if (args.cacheDirectory == null) {
+            sorted = sortOperation.execute();
+        } else {
+            ResultCache resultCache = new ResultCache(RESULT_CACHE_MEMORY_BYTES, Paths.get(args.cacheDirectory),
+                    SORT_ACCEPTANCE_TEST);
+            sorted = resultCache.execute(numbers, sortOperation);
+            System.out.println(String.format("Result cache: %d hit(s), %d miss(es).",
+                    resultCache.getHitCount(), resultCache.getMissCount()));
+        }
+        FileIOUtils.writeIntsToFile(args.outputFile, sorted);
+    }
+
+    private static Operation<int[]> createSortOperation(final DataSorterArgs args, int[] numbers,
+                                                        final long offset) {
+        if (args.partitionSize == 0) {
+            return createExecutive(args, numbers, offset);
+        }
+        return new PartitionedSortOperation(numbers, args.partitionSize, MAX_ATTEMPTS_PER_PARTITION, PARTITION_POOL,
+                new OperationFactory<int[]>() {
+                    @Override
+                    public Operation<int[]> create(int[] partition, long partitionOffset) {
+                        return createExecutive(args, partition, offset + partitionOffset);
+                    }
+                });
+    }
+
+    private static RecoveryBlocksExecutor<int[]> createExecutive(final DataSorterArgs args, int[] numbers,
+                                                                 long offset) {
+        // Every variant sorts its own array in place. A failed sort can leave its array half swapped, so the
+        // primary can't share the array that the backup reads from, even when they run one after the other.
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        // Named after the position of the input, so that the partitions and chunks of a sort keep their failures
+        // however they're scheduled, and a seeded sort of the same file replays them
+        Variant<int[]> primaryVariant = createVariant(args.primaryVariant, numbers.clone(),
+                args.faultSchedule.stream("primary/" + offset, args.primaryFailureModel), checkpoint);
+        // The backup resumes from the primary's progress, if it left any behind
+        final FaultSchedule.Stream prefixFaults = args.faultSchedule.stream("backup-prefix/" + offset,
+                args.backupFailureModel);
+        Variant<int[]> backupVariant = new CheckpointResumingVariant(
+                createVariant(args.backupVariant, numbers,
+                        args.faultSchedule.stream("backup/" + offset, args.backupFailureModel), null),
+                numbers, checkpoint, new OperationFactory<int[]>() {
+                    @Override
+                    public Operation<int[]> create(int[] unsortedPrefix, long prefixOffset) {
+                        return createVariant(args.backupVariant, unsortedPrefix, prefixFaults, null);
+                    }
+                });
+
+        RecoveryBlocksExecutor<int[]> executive = new RecoveryBlocksExecutor.Builder<>(
+                args.deadlinePolicy,
+                SORT_ACCEPTANCE_TEST,
+                primaryVariant)
+                .addBackupVariants(backupVariant)
+                .setExecutionMode(args.executionMode)
+                .setExecutionBackend(args.virtualThreads ? VirtualThreadVariantBackend.getDefault() :
+                                                           VariantWorkerPool.getDefault())
+                .setHedging(LATENCY_HISTORY, HEDGING_PERCENTILE)
+                .setVariantOrdering(args.adaptiveOrder ? VARIANT_ORDERING : null)
+                .setMetricsRegistry(METRICS_REGISTRY)
+                .build();
+        return executive;
+    }
+
+    private static Variant<int[]> createVariant(String variant, int[] numbers, FaultSchedule.Stream faults,
+                                                SortCheckpoint checkpoint) {
+        switch (variant) {
+            case HEAP_SORT:
+                return new IntHeapSortOperation(numbers, faults, HeapSortOperation.DEFAULT_ARITY, checkpoint);
+            case MERGE_SORT:
+                return new ParallelMergeSortOperation(numbers, faults, ForkJoinPool.commonPool(),
+                        ParallelMergeSortOperation.DEFAULT_SEQUENTIAL_CUTOFF);
+            case RADIX_SORT:
+                return new RadixSortOperation(numbers, faults, RadixSortOperation.DEFAULT_DIGIT_BITS);
+            case INTROSORT:
+                // Pinned and sorted in place, since the variant has its own array anyway. A copy would be made to the
+                // C heap and back, on top of the variant's own one.
+                return new NativeIntroSortOperation(numbers, faults, true);
+            case INSERTION_SORT:
+                return new NativeInsertionSortOperation(numbers, faults, true);
+            default:
+                throw new RuntimeException("Developer note: Unexpected variant. Bug in the code.");
+        }
+    }
+
     /**
      * A small data encapsulating class for the args to the program.
      */
@@ -75,21 +209,170 @@ public class DataSorter {
 
         public final String inputFile;
         public final String outputFile;
-        public final double primaryFailureProbability;
-        public final double backupFailureProbability;
-        public final long timeLimitMilliseconds;
+        public final FailureModel primaryFailureModel;
+        public final FailureModel backupFailureModel;
+        // Shared by all the recovery blocks, so that the partitions and chunks of a sort learn from each other
+        public final DeadlinePolicy deadlinePolicy;
+        public final boolean adaptiveOrder;
+        public final long metricsPeriodMilliseconds;
+        public final RecoveryBlocksExecutor.ExecutionMode executionMode;
+        public final boolean virtualThreads;
+        public final String primaryVariant;
+        public final String backupVariant;
+        public final String cacheDirectory;
+        public final long externalMemoryBudgetBytes;
+        public final int partitionSize;
+        public final FaultSchedule faultSchedule;
+        public final String faultRecordFile;
 
-        public DataSorterArgs(String[] args) {
+        public DataSorterArgs(String[] args) throws IOException {
             if (args.length < 5) {
                 throw new IllegalArgumentException("Usage: java <program name> <input file> <output file> " +
                         "<primary variant failure probability> <backup variant failure probability> <time limit" +
-                        " in ms>");
+                        " in ms> [sequential|concurrent|hedged] [platform|virtual] [primary=heap|merge|radix] " +
+                        "[backup=introsort|insertion|radix] [cache=<result cache directory>] " +
+                        "[external=<memory budget in MB>] [partition=<elements per partition>] " +
+                        "[seed=<fault seed>] [record=<fault schedule file>] [replay=<fault schedule file>] " +
+                        "[model=linear|constant|weibull:<shape>|burst:<burst probability>:<mean burst gap>] " +
+                        "[deadline=fixed|adaptive] [order=fixed|adaptive] [metrics=<dump period in ms>]");
             }
             inputFile = args[0];
             outputFile = args[1];
-            primaryFailureProbability = Double.parseDouble(args[2]);
-            backupFailureProbability = Double.parseDouble(args[3]);
-            timeLimitMilliseconds = Long.parseLong(args[4]);
+            double primaryFailureProbability = Double.parseDouble(args[2]);
+            double backupFailureProbability = Double.parseDouble(args[3]);
+            long timeLimitMilliseconds = Long.parseLong(args[4]);
+
+            // The options can be given in any order
+            RecoveryBlocksExecutor.ExecutionMode executionMode = RecoveryBlocksExecutor.ExecutionMode.SEQUENTIAL;
+            boolean virtualThreads = false;
+            String primaryVariant = HEAP_SORT;
+            String backupVariant = INTROSORT;
+            String cacheDirectory = null;
+            long externalMemoryBudgetBytes = 0;
+            int partitionSize = 0;
+            Long faultSeed = null;
+            String faultRecordFile = null;
+            String faultReplayFile = null;
+            String failureModel = LINEAR_FAILURE_MODEL;
+            String deadline = FIXED_DEADLINE;
+            String order = FIXED_ORDER;
+            long metricsPeriodMilliseconds = 0;
+            for (int i = 5; i < args.length; ++i) {
+                String option = args[i];
+                if (option.equalsIgnoreCase("platform") || option.equalsIgnoreCase("virtual")) {
+                    virtualThreads = option.equalsIgnoreCase("virtual");
+                } else if (option.startsWith("primary=")) {
+                    primaryVariant = option.substring("primary=".length());
+                    if (!Arrays.asList(HEAP_SORT, MERGE_SORT, RADIX_SORT).contains(primaryVariant)) {
+                        throw new IllegalArgumentException("Unknown primary variant: " + primaryVariant);
+                    }
+                } else if (option.startsWith("backup=")) {
+                    backupVariant = option.substring("backup=".length());
+                    if (!Arrays.asList(INTROSORT, INSERTION_SORT, RADIX_SORT).contains(backupVariant)) {
+                        throw new IllegalArgumentException("Unknown backup variant: " + backupVariant);
+                    }
+                } else if (option.startsWith("cache=")) {
+                    cacheDirectory = option.substring("cache=".length());
+                } else if (option.startsWith("partition=")) {
+                    partitionSize = Integer.parseInt(option.substring("partition=".length()));
+                    if (partitionSize <= 0) {
+                        throw new IllegalArgumentException("The partition size needs to be positive.");
+                    }
+                } else if (option.startsWith("seed=")) {
+                    faultSeed = Long.parseLong(option.substring("seed=".length()));
+                } else if (option.startsWith("record=")) {
+                    faultRecordFile = option.substring("record=".length());
+                } else if (option.startsWith("replay=")) {
+                    faultReplayFile = option.substring("replay=".length());
+                } else if (option.startsWith("model=")) {
+                    failureModel = option.substring("model=".length());
+                } else if (option.startsWith("deadline=")) {
+                    deadline = option.substring("deadline=".length());
+                    if (!Arrays.asList(FIXED_DEADLINE, ADAPTIVE_DEADLINE).contains(deadline)) {
+                        throw new IllegalArgumentException("Unknown deadline policy: " + deadline);
+                    }
+                } else if (option.startsWith("order=")) {
+                    order = option.substring("order=".length());
+                    if (!Arrays.asList(FIXED_ORDER, ADAPTIVE_ORDER).contains(order)) {
+                        throw new IllegalArgumentException("Unknown variant order: " + order);
+                    }
+                } else if (option.startsWith("metrics=")) {
+                    metricsPeriodMilliseconds = Long.parseLong(option.substring("metrics=".length()));
+                    if (metricsPeriodMilliseconds <= 0) {
+                        throw new IllegalArgumentException("The metrics dump period needs to be positive.");
+                    }
+                } else if (option.startsWith("external=")) {
+                    externalMemoryBudgetBytes = Long.parseLong(option.substring("external=".length())) * 1024 * 1024;
+                    if (externalMemoryBudgetBytes <= 0) {
+                        throw new IllegalArgumentException("The external sort's memory budget needs to be positive.");
+                    }
+                } else {
+                    try {
+                        executionMode = RecoveryBlocksExecutor.ExecutionMode.valueOf(option.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                    }
+                }
+            }
+            if (deadline.equals(ADAPTIVE_DEADLINE)) {
+                if (timeLimitMilliseconds < 0) {
+                    throw new IllegalArgumentException("The time limit for variants can't be negative.");
+                }
+                deadlinePolicy = new AdaptiveDeadlinePolicy(timeLimitMilliseconds,
+                        Math.min(ADAPTIVE_MINIMUM_TIME_LIMIT_MILLISECONDS, timeLimitMilliseconds),
+                        ADAPTIVE_MAXIMUM_TIME_LIMIT_FACTOR * timeLimitMilliseconds);
+            } else {
+                deadlinePolicy = new FixedDeadlinePolicy(timeLimitMilliseconds);
+            }
+            this.adaptiveOrder = order.equals(ADAPTIVE_ORDER);
+            this.metricsPeriodMilliseconds = metricsPeriodMilliseconds;
+            this.executionMode = executionMode;
+            this.virtualThreads = virtualThreads;
+            this.primaryVariant = primaryVariant;
+            this.backupVariant = backupVariant;
+            this.cacheDirectory = cacheDirectory;
+            this.externalMemoryBudgetBytes = externalMemoryBudgetBytes;
+            this.partitionSize = partitionSize;
+            this.primaryFailureModel = createFailureModel(failureModel, primaryFailureProbability);
+            this.backupFailureModel = createFailureModel(failureModel, backupFailureProbability);
+            this.faultRecordFile = faultRecordFile;
+            if (faultReplayFile != null) {
+                if (faultSeed != null || faultRecordFile != null) {
+                    throw new IllegalArgumentException("A replayed fault schedule can't be seeded or recorded.");
+                }
+                faultSchedule = FaultSchedule.load(Paths.get(faultReplayFile));
+            } else if (faultRecordFile != null) {
+                // The seed is saved with the recording, so a random one is just as reproducible
+                faultSchedule = FaultSchedule.recording(faultSeed != null ? faultSeed : System.nanoTime());
+            } else {
+                faultSchedule = faultSeed != null ? FaultSchedule.seeded(faultSeed) : FaultSchedule.unseeded();
+            }
+            if (cacheDirectory != null && externalMemoryBudgetBytes > 0) {
+                throw new IllegalArgumentException("The result cache can't be used with the external sort.");
+            }
+        }
+
+        /**
+         * Creates the failure model of a variant, with the variant's failure probability as its rate.
+         */
+        private static FailureModel createFailureModel(String spec, double failureProbability) {
+            String[] parts = spec.split(":");
+            try {
+                if (parts[0].equals(LINEAR_FAILURE_MODEL) && parts.length == 1) {
+                    return new LinearHazardFailureModel(failureProbability);
+                } else if (parts[0].equals(CONSTANT_FAILURE_MODEL) && parts.length == 1) {
+                    return new ConstantRateFailureModel(failureProbability);
+                } else if (parts[0].equals(WEIBULL_FAILURE_MODEL) && parts.length == 2) {
+                    // The characteristic life is 1 / p accesses
+                    return new WeibullFailureModel(1.0 / failureProbability, Double.parseDouble(parts[1]));
+                } else if (parts[0].equals(BURST_FAILURE_MODEL) && parts.length == 3) {
+                    return new BurstFailureModel(failureProbability, Double.parseDouble(parts[1]),
+                            Double.parseDouble(parts[2]));
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+            throw new IllegalArgumentException("Unknown failure model: " + spec);
         }
     }
 }
@@ -0,0 +1,43 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An interface for deciding how long the {@link RecoveryBlocksExecutor} lets a {@link Variant} run, before
+ * preempting it. Implementations need to be thread safe, since they are usually shared between executors.
+ */
+public interface DeadlinePolicy {
+
+    /**
+     * Gets the time limit for a run of a {@link Variant}.
+     * @param variant The {@link Variant} about to be run.
+     * @param inputSize The size of the input that the {@code variant} works on. 0, if unknown (see
+     *                  {@link SizedOperation}).
+     * @return The time limit in milliseconds.
+     */
+    long getTimeLimitMilliseconds(Variant<?> variant, int inputSize);
+
+    /**
+     * Records the run time of a run of a {@link Variant} that produced an acceptable result.
+     * @param variant The {@link Variant} that was run.
+     * @param inputSize The size of the input that the {@code variant} worked on. 0, if unknown.
+     * @param runTimeNanos The run time in nanoseconds.
+     */
+    void recordRunTime(Variant<?> variant, int inputSize, long runTimeNanos);
+
+    /**
+     * Records a run of a {@link Variant} that was preempted for exceeding its time limit.
+     * @param variant The {@link Variant} that was run.
+     * @param inputSize The size of the input that the {@code variant} worked on. 0, if unknown.
+     */
+    void recordTimeout(Variant<?> variant, int inputSize);
+}
@@ -0,0 +1,398 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+/**
+ * Sorts files of ints, one per line, that don't fit in memory. The input is read in chunks that fit the memory
+ * budget, and every chunk is sorted by its own {@link Operation}, e.g. a {@link RecoveryBlocksExecutor}. The sorted
+ * chunks are spilled to run files, which are then k-way merged, in several passes if there are too many of them for
+ * the budget.
+ *
+ * The progress is recorded in a manifest in the work directory after every run, so a sort that fails or is killed
+ * can be resumed by sorting the same input with the same work directory again. The work directory is cleaned up once
+ * the output has been written.
+ */
+public class ExternalMergeSorter {
+    // A chunk, the primary's copy of it, and the scratch arrays of the merge and radix sorts
+    private static final int BYTES_PER_CHUNK_ELEMENT = 16;
+    private static final int MIN_MERGE_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_MERGE_BUFFER_BYTES = 8 * 1024 * 1024;
+    // Bounded by the number of open files, too
+    private static final int MAX_MERGE_FAN_IN = 256;
+    /**
+     * The smallest memory budget allowed, enough for merging 2 runs at a time.
+     */
+    public static final long MIN_MEMORY_BUDGET_BYTES = 3 * MIN_MERGE_BUFFER_BYTES;
+
+    private static final String MANIFEST_FILE = "manifest.properties";
+    private static final String RUN_FILE_FORMAT = "run-%06d.bin";
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final Path workDirectory;
+    private final OperationFactory<int[]> chunkSorterFactory;
+    private final int chunkElements;
+    private final int mergeFanIn;
+    private final int mergeBufferBytes;
+
+    /**
+     * Creates an {@link ExternalMergeSorter} object.
+     * @param memoryBudgetBytes The memory used for the chunks while sorting them, and for the buffers while merging.
+     * @param workDirectory The directory for the run files and the manifest. Created if it doesn't exist.
+     * @param chunkSorterFactory Creates the {@link Operation} that sorts a chunk. Its exceptions are propagated,
+     *                           and the sort can be resumed afterwards.
+     * @throws IllegalArgumentException Thrown if the budget is below {@link #MIN_MEMORY_BUDGET_BYTES}, or any of the
+     *                                  other arguments is null.
+     */
+    public ExternalMergeSorter(long memoryBudgetBytes, Path workDirectory, OperationFactory<int[]> chunkSorterFactory)
+            throws IllegalArgumentException {
+        if (memoryBudgetBytes < MIN_MEMORY_BUDGET_BYTES) {
+            throw new IllegalArgumentException(String.format("The memory budget needs to be at least %d bytes.",
+                    MIN_MEMORY_BUDGET_BYTES));
+        }
+        if (workDirectory == null || chunkSorterFactory == null) {
+            throw new IllegalArgumentException("The work directory and the chunk sorter factory can't be null.");
+        }
+        this.workDirectory = workDirectory;
+        this.chunkSorterFactory = chunkSorterFactory;
+        this.chunkElements = (int) Math.min(Integer.MAX_VALUE - 8, memoryBudgetBytes / BYTES_PER_CHUNK_ELEMENT);
+        // One buffer per run being merged, and one for the output
+        this.mergeFanIn = (int) Math.max(2, Math.min(MAX_MERGE_FAN_IN,
+                memoryBudgetBytes / MIN_MERGE_BUFFER_BYTES - 1));
+        this.mergeBufferBytes = (int) Math.min(MAX_MERGE_BUFFER_BYTES, memoryBudgetBytes / (mergeFanIn + 1));
+    }
+
+    /**
+     * Sorts the ints in the {@code inputFile} into the {@code outputFile}. Resumes from the work directory's
+     * manifest, if it was left behind by an earlier sort of the same, unmodified input.
+     * @param inputFile The file to be sorted, with an int per line. Blank lines are ignored.
+     * @param outputFile The file for the sorted ints, one per line. Replaced once the sort is done.
+     * @throws IOException Thrown if the I/O operations to the files fail.
+     * @throws NumberFormatException Thrown if a line of the input isn't an int.
+     */
+    public void sort(Path inputFile, Path outputFile) throws IOException, NumberFormatException {
+        Files.createDirectories(workDirectory);
+        String inputId = inputFile.toAbsolutePath() + ":" + Files.size(inputFile) + ":" +
+                Files.getLastModifiedTime(inputFile).toMillis();
+        Manifest manifest = Manifest.load(workDirectory.resolve(MANIFEST_FILE));
+        if (manifest == null || !manifest.inputId.equals(inputId) || manifest.chunkElements != chunkElements) {
+            if (manifest != null) {
+                deleteRuns(manifest.runs);
+            }
+            manifest = new Manifest(inputId, chunkElements);
+        }
+        // Left behind by a sort that was killed while writing
+        try (DirectoryStream<Path> temporaryFiles = Files.newDirectoryStream(workDirectory, "*.tmp")) {
+            for (Path temporaryFile : temporaryFiles) {
+                Files.delete(temporaryFile);
+            }
+        }
+
+        if (!manifest.inputDone) {
+            spillRuns(inputFile, manifest);
+        }
+        while (manifest.runs.size() > mergeFanIn) {
+            mergePass(manifest);
+        }
+        writeOutput(manifest.runs, outputFile);
+
+        deleteRuns(manifest.runs);
+        Files.delete(workDirectory.resolve(MANIFEST_FILE));
+        try {
+            Files.deleteIfExists(workDirectory);
+        } catch (DirectoryNotEmptyException ignored) {
+            // Not ours to clean up
+        }
+    }
+
+    private void spillRuns(Path inputFile, Manifest manifest) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, CHARSET)) {
+            // The chunks sorted before a resume are skipped
+            int[] skipped = new int[Math.min(chunkElements, 1 << 16)];
+            for (long remaining = (long) manifest.chunksDone * chunkElements; remaining > 0; ) {
+                int read = readInts(reader, skipped, (int) Math.min(skipped.length, remaining));
+                if (read == 0) {
+                    throw new IOException("The input is shorter than when its sort was started.");
+                }
+                remaining -= read;
+            }
+
+            while (true) {
+                // Every chunk gets a fresh array, since a losing variant can still be writing to its array for a
+                // moment after the recovery block returns
+                int[] chunk = new int[chunkElements];
+                int size = readInts(reader, chunk, chunk.length);
+                if (size == 0) {
+                    break;
+                }
+                long offset = (long) manifest.chunksDone * chunkElements;
+                int[] sorted = chunkSorterFactory.create(size == chunk.length ? chunk : Arrays.copyOf(chunk, size),
+                        offset).execute();
+
+                String run = String.format(RUN_FILE_FORMAT, manifest.nextRunId++);
+                writeRun(workDirectory.resolve(run), sorted);
+                manifest.runs.add(run);
+                ++manifest.chunksDone;
+                manifest.store(workDirectory.resolve(MANIFEST_FILE));
+                if (size < chunk.length) {
+                    break;
+                }
+            }
+        }
+        manifest.inputDone = true;
+        manifest.store(workDirectory.resolve(MANIFEST_FILE));
+    }
+
+    /**
+     * Merges the first {@link #mergeFanIn} runs into a new one, at the end of the list.
+     */
+    private void mergePass(Manifest manifest) throws IOException {
+        List<String> merged = new ArrayList<>(manifest.runs.subList(0, mergeFanIn));
+        String run = String.format(RUN_FILE_FORMAT, manifest.nextRunId++);
+        Path runFile = workDirectory.resolve(run);
+        Path temporaryFile = Files.createTempFile(workDirectory, run, ".tmp");
+        long length = 0;
+        for (String mergedRun : merged) {
+            length += readRunLength(workDirectory.resolve(mergedRun));
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFile), mergeBufferBytes))) {
+            out.writeLong(length);
+            merge(merged, new IntSink() {
+                @Override
+                public void write(int value) throws IOException {
+                    out.writeInt(value);
+                }
+            });
+        }
+        Files.move(temporaryFile, runFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        manifest.runs.removeAll(merged);
+        manifest.runs.add(run);
+        manifest.store(workDirectory.resolve(MANIFEST_FILE));
+        deleteRuns(merged);
+    }
+
+    private void writeOutput(List<String> runs, Path outputFile) throws IOException {
+        Path temporaryFile = Files.createTempFile(workDirectory, "output", ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(temporaryFile), CHARSET), mergeBufferBytes)) {
+            merge(runs, new IntSink() {
+                @Override
+                public void write(int value) throws IOException {
+                    writer.write(Integer.toString(value));
+                    writer.newLine();
+                }
+            });
+        }
+        Files.move(temporaryFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void merge(List<String> runs, IntSink sink) throws IOException {
+        PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, runs.size()), new Comparator<RunReader>() {
+            @Override
+            public int compare(RunReader a, RunReader b) {
+                return Integer.compare(a.head, b.head);
+            }
+        });
+        List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (String run : runs) {
+                RunReader reader = new RunReader(workDirectory.resolve(run), mergeBufferBytes);
+                readers.add(reader);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+
+            long previous = Long.MIN_VALUE;
+            while (!heads.isEmpty()) {
+                RunReader reader = heads.poll();
+                if (reader.head < previous) {
+                    // Runs are only written after passing the acceptance test, so the file was corrupted since
+                    throw new IOException(String.format("The run '%s' isn't sorted.", reader.file));
+                }
+                previous = reader.head;
+                sink.write(reader.head);
+                if (reader.advance()) {
+                    heads.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private void writeRun(Path runFile, int[] sorted) throws IOException {
+        // Written to a temporary file first, so that a resumed sort never sees a partial run
+        Path temporaryFile = Files.createTempFile(workDirectory, runFile.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporaryFile), MIN_MERGE_BUFFER_BYTES))) {
+            out.writeLong(sorted.length);
+            for (int value : sorted) {
+                out.writeInt(value);
+            }
+        }
+        Files.move(temporaryFile, runFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readRunLength(Path runFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(runFile))) {
+            return in.readLong();
+        }
+    }
+
+    private void deleteRuns(List<String> runs) throws IOException {
+        for (String run : runs) {
+            Files.deleteIfExists(workDirectory.resolve(run));
+        }
+    }
+
+    /**
+     * Reads up to {@code count} ints into the start of {@code buffer}, and returns how many were read.
+     */
+    private static int readInts(BufferedReader reader, int[] buffer, int count) throws IOException {
+        int size = 0;
+        String line;
+        while (size < count && (line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                buffer[size++] = Integer.parseInt(line);
+            }
+        }
+        return size;
+    }
+
+    private interface IntSink {
+        void write(int value) throws IOException;
+    }
+
+    /**
+     * Streams a run file, one int at a time.
+     */
+    private static final class RunReader {
+        private final Path file;
+        private final DataInputStream in;
+        private long remaining;
+        private int head;
+
+        public RunReader(Path file, int bufferBytes) throws IOException {
+            this.file = file;
+            InputStream stream = Files.newInputStream(file);
+            this.in = new DataInputStream(new BufferedInputStream(stream, bufferBytes));
+            this.remaining = in.readLong();
+        }
+
+        /**
+         * Moves to the next int of the run.
+         * @return False, if the run is exhausted.
+         */
+        public boolean advance() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            --remaining;
+            head = in.readInt();
+            return true;
+        }
+
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The progress of a sort, as stored in the work directory.
+     */
+    private static final class Manifest {
+        private final String inputId;
+        private final int chunkElements;
+        private int chunksDone = 0;
+        private boolean inputDone = false;
+        private int nextRunId = 0;
+        private final List<String> runs = new ArrayList<>();
+
+        public Manifest(String inputId, int chunkElements) {
+            this.inputId = inputId;
+            this.chunkElements = chunkElements;
+        }
+
+        /**
+         * Loads the manifest stored in the {@code file}.
+         * @return The stored manifest, or null if there's none.
+         */
+        public static Manifest load(Path file) throws IOException {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            try {
+                Manifest manifest = new Manifest(properties.getProperty("input"),
+                        Integer.parseInt(properties.getProperty("chunkElements")));
+                manifest.chunksDone = Integer.parseInt(properties.getProperty("chunksDone"));
+                manifest.inputDone = Boolean.parseBoolean(properties.getProperty("inputDone"));
+                manifest.nextRunId = Integer.parseInt(properties.getProperty("nextRunId"));
+                String runs = properties.getProperty("runs");
+                if (!runs.isEmpty()) {
+                    manifest.runs.addAll(Arrays.asList(runs.split(",")));
+                }
+                return manifest.inputId == null ? null : manifest;
+            } catch (NullPointerException | NumberFormatException e) {
+                // Not a manifest of ours; start over
+                return null;
+            }
+        }
+
+        public void store(Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("input", inputId);
+            properties.setProperty("chunkElements", Integer.toString(chunkElements));
+            properties.setProperty("chunksDone", Integer.toString(chunksDone));
+            properties.setProperty("inputDone", Boolean.toString(inputDone));
+            properties.setProperty("nextRunId", Integer.toString(nextRunId));
+            properties.setProperty("runs", String.join(",", runs));
+
+            Path temporaryFile = Files.createTempFile(file.getParent(), MANIFEST_FILE, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporaryFile)) {
+                properties.store(out, "External merge sort progress");
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
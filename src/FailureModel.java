@@ -0,0 +1,31 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A model of when the simulated memory accesses fail, for {@link SimulatedMemoryFaults}. Instead of being asked
+ * about every access, a model draws the index of the next failing access up front, so the accesses themselves only
+ * count, however costly the model is. The native variants get the failure point drawn on the Java side as well.
+ *
+ * The models are immutable, so one instance can be shared by any number of faults and threads.
+ */
+public interface FailureModel {
+    /**
+     * Draws the next failing access. Only called for the first access, and right after a failure.
+     * @param accessCount The number of accesses made so far. If positive, the last of them has just failed.
+     * @param uniform A uniform random number in (0, 1], the only randomness the model may use, so that seeded faults
+     *                stay reproducible.
+     * @return The index of the next failing access, counting the accesses from 1, greater than
+     * {@code accessCount}, or {@link Long#MAX_VALUE} if no access will ever fail.
+     */
+    long nextFailureAccess(long accessCount, double uniform);
+}
@@ -0,0 +1,260 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides where the {@link SimulatedMemoryFaults} of a run fail, so that a failing run can be reproduced, and runs of
+ * different builds can be compared under the same failures.
+ *
+ * The faults are created through named {@link Stream}s, e.g. one per variant. Every time a stream creates faults,
+ * they get the key {@code <stream name>#<occurrence>}, and a seeded schedule derives their seed from the key alone,
+ * so the failure points don't depend on the order in which concurrent variants happen to start. A recording
+ * schedule also keeps the failure points drawn by every key, which {@link #save(Path)} writes to a compact file. A
+ * schedule loaded from such a file replays them exactly, in the Java variants and in the native ones, which are
+ * handed their failure point (see {@link SimulatedMemoryFaults#getFailureAccess()}). Thread safe.
+ */
+public final class FaultSchedule {
+    private static final int FILE_MAGIC = 0x464c5453;
+    private static final int FILE_VERSION = 1;
+    private static final FaultSchedule UNSEEDED = new FaultSchedule(false, 0, false, null);
+
+    private final boolean seeded;
+    private final long seed;
+    private final boolean recording;
+    // The recorded failure points by key, if replaying
+    private final Map<String, long[]> replayed;
+    private final ConcurrentMap<String, AtomicInteger> occurrences = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, SimulatedMemoryFaults> recorded = new ConcurrentHashMap<>();
+
+    private FaultSchedule(boolean seeded, long seed, boolean recording, Map<String, long[]> replayed) {
+        this.seeded = seeded;
+        this.seed = seed;
+        this.recording = recording;
+        this.replayed = replayed;
+    }
+
+    /**
+     * Gets the schedule of the runs that don't need to be reproduced. Its faults fail at random points on every run,
+     * and it keeps no state.
+     * @return The unseeded schedule.
+     */
+    public static FaultSchedule unseeded() {
+        return UNSEEDED;
+    }
+
+    /**
+     * Creates a schedule whose faults fail at the same points on every run with the same {@code seed}.
+     * @param seed The seed of the schedule.
+     * @return The schedule.
+     */
+    public static FaultSchedule seeded(long seed) {
+        return new FaultSchedule(true, seed, false, null);
+    }
+
+    /**
+     * Creates a schedule like {@link #seeded(long)}, that also records the failure points, for {@link #save(Path)}.
+     * @param seed The seed of the schedule.
+     * @return The schedule.
+     */
+    public static FaultSchedule recording(long seed) {
+        return new FaultSchedule(true, seed, true, null);
+    }
+
+    /**
+     * Loads a schedule saved by {@link #save(Path)}, to replay it. The faults of keys missing from the file, e.g.
+     * because a variant has been added since, fall back to the recorded seed.
+     * @param file The file.
+     * @return The schedule.
+     * @throws IOException Thrown if the file can't be read, or isn't a saved schedule.
+     */
+    public static FaultSchedule load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readUnsignedByte() != FILE_VERSION) {
+                throw new IOException("Not a fault schedule: " + file);
+            }
+            long seed = in.readLong();
+            int keys = (int) readVarLong(in);
+            Map<String, long[]> replayed = new HashMap<>(keys * 2);
+            for (int i = 0; i < keys; ++i) {
+                String key = in.readUTF();
+                long[] failureAccesses = new long[(int) readVarLong(in)];
+                long previous = 0;
+                for (int j = 0; j < failureAccesses.length; ++j) {
+                    previous += readVarLong(in);
+                    failureAccesses[j] = previous;
+                }
+                replayed.put(key, failureAccesses);
+            }
+            return new FaultSchedule(true, seed, false, replayed);
+        }
+    }
+
+    /**
+     * Saves the seed and the failure points recorded so far. Should be called once the run is over, as the faults
+     * still in use can draw more failure points. Each failure point takes a few bytes, stored as the varint
+     * difference from the previous one of its key.
+     * @param file The file. Overwritten if it exists.
+     * @throws IOException Thrown if the file can't be written.
+     * @throws IllegalStateException Thrown if the schedule isn't recording.
+     */
+    public void save(Path file) throws IOException, IllegalStateException {
+        if (!recording) {
+            throw new IllegalStateException("Only a recording fault schedule can be saved.");
+        }
+        // Sorted, so that the same run always gives the same file
+        Map<String, SimulatedMemoryFaults> byKey = new TreeMap<>(recorded);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeByte(FILE_VERSION);
+            out.writeLong(seed);
+            writeVarLong(out, byKey.size());
+            for (Map.Entry<String, SimulatedMemoryFaults> entry : byKey.entrySet()) {
+                long[] failureAccesses = entry.getValue().getRecordedFailureAccesses();
+                out.writeUTF(entry.getKey());
+                writeVarLong(out, failureAccesses.length);
+                long previous = 0;
+                for (long failureAccess : failureAccesses) {
+                    writeVarLong(out, failureAccess - previous);
+                    previous = failureAccess;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a named stream of faults.
+     * @param name The name of the stream. Needs to be the same on every run, and unique within a run, e.g. the role
+     *             of a variant and the offset of its input.
+     * @param failureProbability The failure probability of the {@link LinearHazardFailureModel}.
+     * @return The stream.
+     * @throws IllegalArgumentException Thrown if the name is null, or the probability is not between 0 and 1.
+     */
+    public Stream stream(String name, double failureProbability) throws IllegalArgumentException {
+        return stream(name, new LinearHazardFailureModel(failureProbability));
+    }
+
+    /**
+     * Creates a named stream of faults.
+     * @param name The name of the stream. See {@link #stream(String, double)}.
+     * @param model The {@link FailureModel} of the faults.
+     * @return The stream.
+     * @throws IllegalArgumentException Thrown if the name or the model is null.
+     */
+    public Stream stream(String name, FailureModel model) throws IllegalArgumentException {
+        if (name == null || model == null) {
+            throw new IllegalArgumentException("The stream name and the failure model can't be null.");
+        }
+        return new Stream(this, name, model);
+    }
+
+    private SimulatedMemoryFaults createFaults(String name, FailureModel model) {
+        if (!seeded) {
+            return new SimulatedMemoryFaults(model);
+        }
+
+        AtomicInteger occurrence = occurrences.get(name);
+        if (occurrence == null) {
+            AtomicInteger newOccurrence = new AtomicInteger();
+            occurrence = occurrences.putIfAbsent(name, newOccurrence);
+            if (occurrence == null) {
+                occurrence = newOccurrence;
+            }
+        }
+        String key = name + '#' + occurrence.getAndIncrement();
+
+        if (replayed != null && replayed.containsKey(key)) {
+            return new SimulatedMemoryFaults(replayed.get(key));
+        }
+        SimulatedMemoryFaults faults = new SimulatedMemoryFaults(model, seed ^ hashOf(key), recording);
+        if (recording) {
+            recorded.put(key, faults);
+        }
+        return faults;
+    }
+
+    /**
+     * A 64 bit FNV-1a hash, as {@link String#hashCode()} collides too easily for similar keys.
+     */
+    private static long hashOf(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); ++i) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed fault schedule.");
+    }
+
+    /**
+     * A named stream of {@link SimulatedMemoryFaults}, e.g. for a variant, which creates fresh faults on every
+     * execution.
+     */
+    public static final class Stream {
+        private final FaultSchedule schedule;
+        private final String name;
+        private final FailureModel model;
+
+        private Stream(FaultSchedule schedule, String name, FailureModel model) {
+            this.schedule = schedule;
+            this.name = name;
+            this.model = model;
+        }
+
+        /**
+         * Gets the failure model of the faults, e.g. for a variant that draws its failures in another way.
+         * @return The failure model.
+         */
+        public FailureModel getModel() {
+            return model;
+        }
+
+        /**
+         * Creates the faults for the next use of this stream, e.g. the next execution of its variant.
+         * @return The faults.
+         */
+        public SimulatedMemoryFaults createFaults() {
+            return schedule.createFaults(name, model);
+        }
+    }
+}
@@ -11,12 +11,15 @@
  limitations under the License.
  */
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -61,6 +64,48 @@ public class FileIOUtils {
         Files.write(file, dataToWrite, Charset.forName("UTF-8"));
     }
 
+    /**
+     * Reads an int per line from a file, without boxing them. Blank lines are ignored, like with the
+     * {@link #STRING_TO_INTEGER_CONVERTER}.
+     * @param filePath The path to the file.
+     * @return The ints in the file, in order.
+     * @throws IOException Thrown if the I/O operations to the file fail.
+     * @throws NumberFormatException Thrown if a line isn't an int.
+     */
+    public static int[] readIntsFromFile(String filePath) throws IOException, NumberFormatException {
+        int[] data = new int[1024];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), Charset.forName("UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (size == data.length) {
+                    data = Arrays.copyOf(data, size * 2);
+                }
+                data[size++] = Integer.parseInt(line);
+            }
+        }
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Writes the ints to a file, one per line, without boxing them.
+     * @param outputFilePath The path to the file.
+     * @param data The ints to be written out.
+     * @throws IOException Thrown if the I/O operations to the file fail.
+     */
+    public static void writeIntsToFile(String outputFilePath, int[] data) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFilePath), Charset.forName("UTF-8"))) {
+            for (int i : data) {
+                writer.write(Integer.toString(i));
+                writer.newLine();
+            }
+        }
+    }
+
     /**
      * Converts the list by mapping each element to another using the converter. Ignores the null equivalent
      * objects.
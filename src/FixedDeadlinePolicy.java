@@ -0,0 +1,55 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link DeadlinePolicy} that gives every {@link Variant} the same time limit, whatever the input size.
+ */
+public class FixedDeadlinePolicy implements DeadlinePolicy {
+    private final long timeLimitMilliseconds;
+
+    /**
+     * Creates a {@link FixedDeadlinePolicy} object.
+     * @param timeLimitMilliseconds The time limit for every variant.
+     * @throws IllegalArgumentException Thrown if {@code timeLimitMilliseconds} is negative.
+     */
+    public FixedDeadlinePolicy(long timeLimitMilliseconds) throws IllegalArgumentException {
+        if (timeLimitMilliseconds < 0) {
+            throw new IllegalArgumentException("The time limit for variants can't be negative.");
+        }
+        this.timeLimitMilliseconds = timeLimitMilliseconds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeLimitMilliseconds(Variant<?> variant, int inputSize) {
+        return timeLimitMilliseconds;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordRunTime(Variant<?> variant, int inputSize, long runTimeNanos) {
+        // Nothing to learn
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordTimeout(Variant<?> variant, int inputSize) {
+        // Nothing to learn
+    }
+}
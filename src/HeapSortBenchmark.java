@@ -0,0 +1,213 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the heap sort engine against the original recursive, top-down binary heap sort, by the number of
+ * comparisons and the run time, for several heap arities. Then shows how the {@link ParallelMergeSortOperation} scales
+ * with the parallelism of its {@link ForkJoinPool}, up to the number of cores, next to the single threaded
+ * {@link IntHeapSortOperation}.
+ *
+ * Java can't count cache misses itself. For those, run a single configuration at a time under a profiler, e.g.
+ * {@code perf stat -e cache-misses java HeapSortBenchmark 10000000 4}, and {@code ... 10000000 0} for the baseline.
+ */
+public class HeapSortBenchmark {
+    private static final int[] DEFAULT_ARITIES = {2, 4, 8};
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java <program name> <number of elements> [heap arity, or 0 for the " +
+                    "baseline]...");
+            return;
+        }
+
+        int numValues = Integer.parseInt(args[0]);
+        int[] arities = DEFAULT_ARITIES;
+        boolean baseline = args.length == 1;
+        if (args.length > 1) {
+            arities = new int[args.length - 1];
+            for (int i = 1; i < args.length; ++i) {
+                arities[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        int[] input = new Random(numValues).ints(numValues).toArray();
+        System.out.println(String.format("%-22s %18s %14s %14s", "engine", "comparisons", "List<Integer> ms",
+                "int[] ms"));
+        if (baseline) {
+            benchmarkBaseline(input);
+        }
+        for (int arity : arities) {
+            if (arity == 0) {
+                benchmarkBaseline(input);
+            } else {
+                benchmark(input, arity);
+            }
+        }
+
+        System.out.println();
+        benchmarkScaling(input);
+    }
+
+    private static void benchmark(int[] input, int arity) {
+        List<CountingInteger> counted = toCountingList(input);
+        CountingInteger.comparisons = 0;
+        new HeapSortOperation<>(counted, arity).execute();
+        long comparisons = CountingInteger.comparisons;
+
+        long listMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            List<Integer> list = toList(input);
+            long start = System.nanoTime();
+            new HeapSortOperation<>(list, arity).execute();
+            listMillis = Math.min(listMillis, (System.nanoTime() - start) / 1000000);
+        }
+
+        long arrayMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            int[] data = input.clone();
+            long start = System.nanoTime();
+            new IntHeapSortOperation(data, 0.0, arity).execute();
+            arrayMillis = Math.min(arrayMillis, (System.nanoTime() - start) / 1000000);
+        }
+
+        System.out.println(String.format("%-22s %18d %14d %14d", "bottom-up " + arity + "-ary", comparisons,
+                listMillis, arrayMillis));
+    }
+
+    private static void benchmarkScaling(int[] input) {
+        long heapMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            int[] data = input.clone();
+            long start = System.nanoTime();
+            new IntHeapSortOperation(data, 0.0).execute();
+            heapMillis = Math.min(heapMillis, (System.nanoTime() - start) / 1000000);
+        }
+        System.out.println(String.format("%-22s %8s %14s %10s", "engine", "threads", "int[] ms", "speedup"));
+        System.out.println(String.format("%-22s %8d %14d %10s", "int[] heap sort", 1, heapMillis, "-"));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        long singleThreadMillis = 0;
+        for (int parallelism = 1; parallelism <= cores; parallelism = nextParallelism(parallelism, cores)) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            long millis = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; ++run) {
+                int[] data = input.clone();
+                long start = System.nanoTime();
+                new ParallelMergeSortOperation(data, 0.0, pool, ParallelMergeSortOperation.DEFAULT_SEQUENTIAL_CUTOFF)
+                        .execute();
+                millis = Math.min(millis, (System.nanoTime() - start) / 1000000);
+            }
+            pool.shutdown();
+            if (parallelism == 1) {
+                singleThreadMillis = millis;
+            }
+            System.out.println(String.format("%-22s %8d %14d %10.2f", "parallel merge sort", parallelism, millis,
+                    (double) singleThreadMillis / Math.max(millis, 1)));
+        }
+    }
+
+    /**
+     * Doubles the parallelism, but always ends with the number of cores.
+     */
+    private static int nextParallelism(int parallelism, int cores) {
+        return parallelism < cores && parallelism * 2 > cores ? cores : parallelism * 2;
+    }
+
+    private static void benchmarkBaseline(int[] input) {
+        List<CountingInteger> counted = toCountingList(input);
+        CountingInteger.comparisons = 0;
+        TopDownHeapSort.sort(counted);
+        long comparisons = CountingInteger.comparisons;
+
+        long listMillis = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; ++run) {
+            List<Integer> list = toList(input);
+            long start = System.nanoTime();
+            TopDownHeapSort.sort(list);
+            listMillis = Math.min(listMillis, (System.nanoTime() - start) / 1000000);
+        }
+
+        System.out.println(String.format("%-22s %18d %14d %14s", "top-down 2-ary (old)", comparisons, listMillis,
+                "-"));
+    }
+
+    private static List<Integer> toList(int[] input) {
+        List<Integer> list = new ArrayList<>(input.length);
+        for (int i : input) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    private static List<CountingInteger> toCountingList(int[] input) {
+        List<CountingInteger> list = new ArrayList<>(input.length);
+        for (int i : input) {
+            list.add(new CountingInteger(i));
+        }
+        return list;
+    }
+
+    /**
+     * An int that counts how often it's compared. Single threaded.
+     */
+    private static class CountingInteger implements Comparable<CountingInteger> {
+        private static long comparisons = 0;
+        private final int value;
+
+        public CountingInteger(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(CountingInteger other) {
+            ++comparisons;
+            return Integer.compare(value, other.value);
+        }
+    }
+
+    /**
+     * The heap sort engine as it was before the bottom-up, d-ary rewrite. Kept as the benchmark's baseline.
+     */
+    private static class TopDownHeapSort {
+        public static <T extends Comparable<T>> void sort(List<T> data) {
+            for (int i = data.size()/2 - 1; i >= 0; --i) {
+                heapify(data, i, data.size() - 1);
+            }
+            for (int i = data.size() - 1; i > 0; --i) {
+                T temp = data.set(0, data.get(i));
+                data.set(i, temp);
+                heapify(data, 0, i - 1);
+            }
+        }
+
+        private static <T extends Comparable<T>> void heapify(List<T> data, int root, int end) {
+            int left = 2*root + 1;
+            int right = 2*root + 2;
+            if (left > end) {
+                return;
+            }
+            int maxChild = right <= end && data.get(right).compareTo(data.get(left)) > 0 ? right : left;
+            if (data.get(maxChild).compareTo(data.get(root)) > 0) {
+                T temp = data.set(root, data.get(maxChild));
+                data.set(maxChild, temp);
+                heapify(data, maxChild, end);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link Variant} for sorting an int array in place using the heap sort algorithm. The primitive counterpart of the
+ * {@link HeapSortOperation}: no boxing, and no allocations while sorting.
+ * The array is accessed through a {@link RandomlyFailingIntArray}, the primitive counterpart of the
+ * {@link RandomlyFailingList}. Uses the same bottom-up, d-ary heap as the {@link HeapSortOperation}. The
+ * {@link CancellationToken} is checked on every sift-down.
+ * Optionally, the sorted suffix built up by the extractions is published to a {@link SortCheckpoint}
+ * {@value #CHECKPOINTS_PER_SORT} times per sort, so that a backup variant can resume from it.
+ */
+public class IntHeapSortOperation implements CancellableOperation<int[]>, SizedOperation<int[]>, Variant<int[]> {
+    /**
+     * The number of times the progress is published, if there's a {@link SortCheckpoint}.
+     */
+    public static final int CHECKPOINTS_PER_SORT = 16;
+
+    private static final String VARIANT_NAME = "Heap sort (int[]) primary variant";
+    private final int[] data;
+    private final FaultSchedule.Stream faults;
+    private final int arity;
+    private final SortCheckpoint checkpoint;
+    private RandomlyFailingIntArray array = null;
+    private CancellationToken cancellationToken = null;
+
+    /**
+     * Creates an {@link IntHeapSortOperation} object using a {@link HeapSortOperation#DEFAULT_ARITY}-ary heap.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public IntHeapSortOperation(int[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, HeapSortOperation.DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates an {@link IntHeapSortOperation} object.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @param arity The number of children of every heap node, e.g. 2 for a binary heap.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1, or {@code arity} is less
+     *                                  than 2.
+     */
+    public IntHeapSortOperation(int[] data, double failureProbability, int arity) throws IllegalArgumentException {
+        this(data, failureProbability, arity, null);
+    }
+
+    /**
+     * Creates an {@link IntHeapSortOperation} object that publishes its progress.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @param arity The number of children of every heap node, e.g. 2 for a binary heap.
+     * @param checkpoint The {@link SortCheckpoint} to publish the sorted suffix to. Can be null.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1, or {@code arity} is less
+     *                                  than 2.
+     */
+    public IntHeapSortOperation(int[] data, double failureProbability, int arity, SortCheckpoint checkpoint)
+            throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), arity, checkpoint);
+    }
+
+    /**
+     * Creates an {@link IntHeapSortOperation} object that publishes its progress, and fails as scheduled.
+     * @param data The array to be sorted in place.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults.
+     * @param arity The number of children of every heap node, e.g. 2 for a binary heap.
+     * @param checkpoint The {@link SortCheckpoint} to publish the sorted suffix to. Can be null.
+     * @throws IllegalArgumentException Thrown if {@code faults} is null, or {@code arity} is less than 2.
+     */
+    public IntHeapSortOperation(int[] data, FaultSchedule.Stream faults, int arity, SortCheckpoint checkpoint)
+            throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
+        if (arity < 2) {
+            throw new IllegalArgumentException("The heap arity needs to be at least 2.");
+        }
+        this.data = data;
+        this.faults = faults;
+        this.arity = arity;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return VARIANT_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        this.array = new RandomlyFailingIntArray(data, faults.createFaults());
+        if (data.length < 2) {
+            // Already sorted. Also keeps the first parent index below from rounding up to 0.
+            return data;
+        }
+        for (int i = (data.length - 2) / arity; i >= 0; --i) {
+            siftDown(i, data.length - 1, array.get(i));
+        }
+        int checkpointInterval = Math.max(1, data.length / CHECKPOINTS_PER_SORT);
+        for (int i = data.length - 1; i > 0; --i) {
+            int value = array.get(i);
+            array.set(i, array.get(0));
+            siftDown(0, i - 1, value);
+            if (checkpoint != null && i % checkpointInterval == 0) {
+                // data[i..] now holds the largest elements in their final order
+                checkpoint.publish(data, i);
+            }
+        }
+        return data;
+    }
+
+    private void siftDown(int root, int end, int value) {
+        cancellationToken.throwIfCancelled();
+
+        // Moves the hole down to a leaf, along the path of the largest children
+        int hole = root;
+        int child;
+        while ((child = arity * hole + 1) <= end) {
+            int maxChild = child;
+            int maxChildValue = array.get(child);
+            int lastChild = Math.min(child + arity - 1, end);
+            for (int sibling = child + 1; sibling <= lastChild; ++sibling) {
+                int siblingValue = array.get(sibling);
+                if (siblingValue > maxChildValue) {
+                    maxChild = sibling;
+                    maxChildValue = siblingValue;
+                }
+            }
+            array.set(hole, maxChildValue);
+            hole = maxChild;
+        }
+
+        // Climbs back up until the parent isn't smaller
+        while (hole > root) {
+            int parent = (hole - 1) / arity;
+            int parentValue = array.get(parent);
+            if (parentValue >= value) {
+                break;
+            }
+            array.set(hole, parentValue);
+            hole = parent;
+        }
+        array.set(hole, value);
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recent run times of the {@link Variant}s that produced acceptable results, grouped by variant name
+ * and input size, for answering latency percentile queries.
+ *
+ * Input sizes are grouped into power of 2 buckets, so that e.g. the 1000 and 1020 element sorts share their
+ * statistics. Is meant to be shared by all the {@link RecoveryBlocksExecutor}s running the same kind of job.
+ * Thread safe.
+ */
+public class LatencyHistory {
+    private final int windowSize;
+    private final int minimumSamples;
+    // Guarded by 'this'
+    private final Map<String, SampleWindow> windows = new HashMap<>();
+
+    /**
+     * Creates a {@link LatencyHistory} object.
+     * @param windowSize The number of most recent samples kept per variant and input size bucket.
+     * @param minimumSamples The number of samples needed before percentiles are reported for a bucket.
+     * @throws IllegalArgumentException Thrown if {@code windowSize} is not positive, or {@code minimumSamples} is not
+     *                                  between 1 and {@code windowSize}.
+     */
+    public LatencyHistory(int windowSize, int minimumSamples) throws IllegalArgumentException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size needs to be positive.");
+        }
+        if (minimumSamples <= 0 || minimumSamples > windowSize) {
+            throw new IllegalArgumentException("The minimum number of samples needs to be between 1 and the window "
+                    + "size.");
+        }
+        this.windowSize = windowSize;
+        this.minimumSamples = minimumSamples;
+    }
+
+    /**
+     * Records the run time of an acceptable run.
+     * @param variant The {@link Variant} that was run.
+     * @param inputSize The size of the input that the {@code variant} worked on.
+     * @param latencyNanos The run time in nanoseconds.
+     */
+    public synchronized void record(Variant<?> variant, int inputSize, long latencyNanos) {
+        String key = keyOf(variant, inputSize);
+        SampleWindow window = windows.get(key);
+        if (window == null) {
+            window = new SampleWindow(windowSize);
+            windows.put(key, window);
+        }
+        window.add(latencyNanos);
+    }
+
+    /**
+     * Gets a run time percentile of the recorded acceptable runs.
+     * @param variant The {@link Variant} to be queried.
+     * @param inputSize The input size to be queried.
+     * @param percentile The percentile, between 0 (exclusive) and 1 (inclusive). E.g. 0.95 for p95.
+     * @return The percentile run time in nanoseconds, or -1 if there aren't enough samples yet.
+     */
+    public synchronized long getPercentileNanos(Variant<?> variant, int inputSize, double percentile) {
+        SampleWindow window = windows.get(keyOf(variant, inputSize));
+        if (window == null || window.count < minimumSamples) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(window.samples, window.count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static String keyOf(Variant<?> variant, int inputSize) {
+        // Variants are usually created per job, so they are identified by name
+        return variant.getName() + "#" + (32 - Integer.numberOfLeadingZeros(inputSize));
+    }
+
+    /**
+     * A ring buffer of the most recent samples.
+     */
+    private static class SampleWindow {
+        private final long[] samples;
+        private int count = 0;
+        private int next = 0;
+
+        public SampleWindow(int size) {
+            samples = new long[size];
+        }
+
+        public void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * The default {@link FailureModel}: the n-th access fails with a probability of
+ * {@code min(n * failureProbability, 0.5)}, so a sort gets more likely to fail the longer it runs, and fails on
+ * about every other access after {@code 0.5 / failureProbability} accesses.
+ *
+ * Drawn by inverting the survival function: the accesses up to n survive with a probability of exp(-H(n)), where H
+ * is the cumulative hazard, found by bisection within the ramp, and geometric past it.
+ */
+public final class LinearHazardFailureModel implements FailureModel {
+    // The per-access failure probability stops growing at this point
+    private static final double MAX_FAILURE_PROBABILITY = 0.5;
+    private static final double MAX_ACCESS_HAZARD = -Math.log1p(-MAX_FAILURE_PROBABILITY);
+    private static final int BISECTION_STEPS = 128;
+    private static final double BISECTION_TOLERANCE = 1e-6;
+    // Below this, the cumulative hazard is computed from its series
+    private static final double SERIES_THRESHOLD = 1e-4;
+
+    private final double failureProbability;
+    // The number of accesses over which the failure probability grows, and their cumulative hazard
+    private final double rampAccesses;
+    private final double rampHazard;
+
+    /**
+     * Creates a {@link LinearHazardFailureModel} object.
+     * @param failureProbability The growth of the failure probability per access. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public LinearHazardFailureModel(double failureProbability) throws IllegalArgumentException {
+        if (failureProbability > 1.0 || failureProbability < 0.0) {
+            throw new IllegalArgumentException("Failure Probability needs to be between 0 and 1.");
+        }
+        this.failureProbability = failureProbability;
+        this.rampAccesses = failureProbability == 0.0 ? 0.0 : Math.floor(MAX_FAILURE_PROBABILITY / failureProbability);
+        this.rampHazard = failureProbability == 0.0 ? 0.0 : hazardUpTo(rampAccesses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextFailureAccess(long accessCount, double uniform) {
+        if (failureProbability == 0.0) {
+            return Long.MAX_VALUE;
+        }
+
+        double target = cumulativeHazard(accessCount) - Math.log(uniform);
+        double accesses;
+        if (target <= rampHazard) {
+            double lo = accessCount;
+            double hi = rampAccesses;
+            for (int step = 0; step < BISECTION_STEPS && hi - lo > BISECTION_TOLERANCE; ++step) {
+                double mid = (lo + hi) / 2;
+                if (hazardUpTo(mid) < target) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            accesses = Math.ceil(hi);
+        } else {
+            // Geometric from here on, which the exponential sample gives exactly when rounded up
+            accesses = rampAccesses + Math.ceil((target - rampHazard) / MAX_ACCESS_HAZARD);
+        }
+        return accesses >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) accesses;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "linear(" + failureProbability + ")";
+    }
+
+    private double cumulativeHazard(long accesses) {
+        return accesses <= rampAccesses ? hazardUpTo(accesses) :
+                rampHazard + (accesses - rampAccesses) * MAX_ACCESS_HAZARD;
+    }
+
+    /**
+     * The cumulative hazard of the accesses up to {@code accesses}, within the ramp. The integral from k - 0.5 to
+     * k + 0.5 of -ln(1 - p * x) stands in for the k-th access.
+     */
+    private double hazardUpTo(double accesses) {
+        return integratedHazard(accesses + 0.5) - integratedHazard(0.5);
+    }
+
+    private double integratedHazard(double x) {
+        double u = failureProbability * x;
+        if (u < SERIES_THRESHOLD) {
+            // The closed form below cancels out to nothing for small u
+            return u * u * (0.5 + u * (1.0 / 6 + u / 12)) / failureProbability;
+        }
+        return (u + (1.0 - u) * Math.log1p(-u)) / failureProbability;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link Variant} for sorting a long array in place using the heap sort algorithm. The primitive counterpart of the
+ * {@link HeapSortOperation}: no boxing, and no allocations while sorting.
+ * The array is accessed through a {@link RandomlyFailingLongArray}, the primitive counterpart of the
+ * {@link RandomlyFailingList}. Uses the same bottom-up, d-ary heap as the {@link HeapSortOperation}. The
+ * {@link CancellationToken} is checked on every sift-down.
+ */
+public class LongHeapSortOperation implements CancellableOperation<long[]>, SizedOperation<long[]>, Variant<long[]> {
+    private static final String VARIANT_NAME = "Heap sort (long[]) primary variant";
+    private final long[] data;
+    private final FaultSchedule.Stream faults;
+    private final int arity;
+    private RandomlyFailingLongArray array = null;
+    private CancellationToken cancellationToken = null;
+
+    /**
+     * Creates a {@link LongHeapSortOperation} object using a {@link HeapSortOperation#DEFAULT_ARITY}-ary heap.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public LongHeapSortOperation(long[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, HeapSortOperation.DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates a {@link LongHeapSortOperation} object.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @param arity The number of children of every heap node, e.g. 2 for a binary heap.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1, or {@code arity} is less
+     *                                  than 2.
+     */
+    public LongHeapSortOperation(long[] data, double failureProbability, int arity) throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), arity);
+    }
+
+    /**
+     * Creates a {@link LongHeapSortOperation} object that fails as scheduled, e.g. with another
+     * {@link FailureModel}.
+     * @param data The array to be sorted in place.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults.
+     * @param arity The number of children of every heap node, e.g. 2 for a binary heap.
+     * @throws IllegalArgumentException Thrown if {@code faults} is null, or {@code arity} is less than 2.
+     */
+    public LongHeapSortOperation(long[] data, FaultSchedule.Stream faults, int arity) throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
+        if (arity < 2) {
+            throw new IllegalArgumentException("The heap arity needs to be at least 2.");
+        }
+        this.data = data;
+        this.faults = faults;
+        this.arity = arity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return VARIANT_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long[] execute(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        this.array = new RandomlyFailingLongArray(data, faults.createFaults());
+        if (data.length < 2) {
+            // Already sorted. Also keeps the first parent index below from rounding up to 0.
+            return data;
+        }
+        for (int i = (data.length - 2) / arity; i >= 0; --i) {
+            siftDown(i, data.length - 1, array.get(i));
+        }
+        for (int i = data.length - 1; i > 0; --i) {
+            long value = array.get(i);
+            array.set(i, array.get(0));
+            siftDown(0, i - 1, value);
+        }
+        return data;
+    }
+
+    private void siftDown(int root, int end, long value) {
+        cancellationToken.throwIfCancelled();
+
+        // Moves the hole down to a leaf, along the path of the largest children
+        int hole = root;
+        int child;
+        while ((child = arity * hole + 1) <= end) {
+            int maxChild = child;
+            long maxChildValue = array.get(child);
+            int lastChild = Math.min(child + arity - 1, end);
+            for (int sibling = child + 1; sibling <= lastChild; ++sibling) {
+                long siblingValue = array.get(sibling);
+                if (siblingValue > maxChildValue) {
+                    maxChild = sibling;
+                    maxChildValue = siblingValue;
+                }
+            }
+            array.set(hole, maxChildValue);
+            hole = maxChild;
+        }
+
+        // Climbs back up until the parent isn't smaller
+        while (hole > root) {
+            int parent = (hole - 1) / arity;
+            long parentValue = array.get(parent);
+            if (parentValue >= value) {
+                break;
+            }
+            array.set(hole, parentValue);
+            hole = parent;
+        }
+        array.set(hole, value);
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An interface for the simulated memory access failures of a fault-injected collection, e.g. a
+ * {@link RandomlyFailingList}. Either {@link SimulatedMemoryFaults}, for a single thread, or
+ * {@link ConcurrentSimulatedMemoryFaults}, for many threads sharing one hazard.
+ */
+public interface MemoryFaults {
+    /**
+     * Records a memory access, which might fail.
+     * @throws MemoryAccessFailureException Thrown if a failure is simulated for this access.
+     */
+    void access() throws MemoryAccessFailureException;
+}
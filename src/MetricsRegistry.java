@@ -0,0 +1,162 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A registry of the {@link VariantMetrics} of all the {@link Variant}s run by the {@link RecoveryBlocksExecutor}s it
+ * is given to. The variants are identified by name, since they are usually created per job.
+ *
+ * The metrics can be exposed over JMX, with one MBean per variant, and dumped as text periodically.
+ * Thread safe.
+ */
+public class MetricsRegistry {
+    private final String jmxDomain;
+    private final ConcurrentMap<String, VariantMetrics> metrics = new ConcurrentHashMap<>();
+    private final Set<ObjectName> registeredNames = Collections.newSetFromMap(
+            new ConcurrentHashMap<ObjectName, Boolean>());
+    // Guarded by 'this'
+    private ScheduledExecutorService dumpScheduler = null;
+
+    /**
+     * Creates a {@link MetricsRegistry} object.
+     * @param jmxDomain The JMX domain under which the {@link VariantMetrics} are registered with the platform MBean
+     *                  server, as {@code <domain>:type=VariantMetrics,name=<variant name>}. Can be null, if they
+     *                  shouldn't be exposed over JMX.
+     */
+    public MetricsRegistry(String jmxDomain) {
+        this.jmxDomain = jmxDomain;
+    }
+
+    /**
+     * Gets the {@link VariantMetrics} of a {@link Variant}, creating and registering them on first use.
+     * @param variant The {@link Variant}.
+     * @return The {@link VariantMetrics} for the {@code variant}'s name.
+     */
+    public VariantMetrics getMetrics(Variant<?> variant) {
+        String variantName = variant.getName();
+        VariantMetrics variantMetrics = metrics.get(variantName);
+        if (variantMetrics != null) {
+            return variantMetrics;
+        }
+
+        VariantMetrics newMetrics = new VariantMetrics(variantName);
+        variantMetrics = metrics.putIfAbsent(variantName, newMetrics);
+        if (variantMetrics != null) {
+            return variantMetrics;
+        }
+        if (jmxDomain != null) {
+            registerMBean(newMetrics);
+        }
+        return newMetrics;
+    }
+
+    /**
+     * Formats the metrics of all the {@link Variant}s seen so far, one line per variant.
+     * @return The formatted metrics.
+     */
+    public String getReport() {
+        List<VariantMetrics> snapshot = new ArrayList<>(metrics.values());
+        Collections.sort(snapshot, new Comparator<VariantMetrics>() {
+            @Override
+            public int compare(VariantMetrics left, VariantMetrics right) {
+                return left.getVariantName().compareTo(right.getVariantName());
+            }
+        });
+
+        StringBuilder report = new StringBuilder();
+        for (VariantMetrics variantMetrics : snapshot) {
+            report.append(variantMetrics).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Starts printing the {@link #getReport()} periodically on a daemon thread. Replaces any previous periodic dump.
+     * @param out The stream to print to.
+     * @param periodMilliseconds The time between two dumps.
+     * @throws IllegalArgumentException Thrown if {@code periodMilliseconds} is not positive.
+     */
+    public synchronized void startPeriodicDump(final PrintStream out, long periodMilliseconds)
+            throws IllegalArgumentException {
+        if (periodMilliseconds <= 0) {
+            throw new IllegalArgumentException("The dump period needs to be positive.");
+        }
+        stopPeriodicDump();
+        dumpScheduler = new ScheduledThreadPoolExecutor(1, new NamedDaemonThreadFactory("metrics-dump"));
+        dumpScheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                out.print(getReport());
+                out.flush();
+            }
+        }, periodMilliseconds, periodMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, if it's running.
+     */
+    public synchronized void stopPeriodicDump() {
+        if (dumpScheduler != null) {
+            dumpScheduler.shutdownNow();
+            dumpScheduler = null;
+        }
+    }
+
+    /**
+     * Stops the periodic dump, and unregisters the MBeans registered by this registry.
+     */
+    public void shutdown() {
+        stopPeriodicDump();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                System.err.println(String.format("Couldn't unregister the MBean '%s': %s", name, e.getMessage()));
+            }
+            registeredNames.remove(name);
+        }
+    }
+
+    private void registerMBean(VariantMetrics variantMetrics) {
+        try {
+            ObjectName name = getObjectName(variantMetrics);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(variantMetrics, name);
+            registeredNames.add(name);
+        } catch (JMException e) {
+            // E.g. another registry in the same domain already has this variant. Recording still works.
+            System.err.println(String.format("Couldn't register the metrics of variant '%s' with JMX: %s",
+                    variantMetrics.getVariantName(), e.getMessage()));
+        }
+    }
+
+    private ObjectName getObjectName(VariantMetrics variantMetrics) throws JMException {
+        return new ObjectName(String.format("%s:type=VariantMetrics,name=%s", jmxDomain,
+                ObjectName.quote(variantMetrics.getVariantName())));
+    }
+}
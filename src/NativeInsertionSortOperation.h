@@ -23,10 +23,10 @@ extern "C" {
 /*
  * Class:     NativeInsertionSortOperation
  * Method:    insertionSort
- * Signature: ([ID)V
+ * Signature: ([IJLjava/nio/ByteBuffer;Z)V
  */
 JNIEXPORT void JNICALL Java_NativeInsertionSortOperation_insertionSort
-  (JNIEnv *, jobject, jintArray, jdouble);
+  (JNIEnv *, jobject, jintArray, jlong, jobject, jboolean);
 
 #ifdef __cplusplus
 }
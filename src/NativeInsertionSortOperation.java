@@ -11,36 +11,73 @@
  limitations under the License.
  */
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 /**
- * A Java {@link Variant} wrapper for sorting a list of Integers using the native insertion_sort lib.
+ * A Java {@link Variant} wrapper for sorting an int array using the native insertion_sort lib. By default, the native
+ * code sorts a copy of the input array, that is only copied back once it's sorted. In place, the input array itself
+ * is pinned and sorted, without any copies; see {@link #NativeInsertionSortOperation(int[], double, boolean)}.
  * A "libinsertion_sort.*" dynamic library should be present at runtime in the Java load path.
  * * = platform specific extension
+ * The native sort polls the {@link CancellationToken} on every memory access, so a cancelled sort returns right away.
  * Created by rishi on 2016-02-20.
  */
-public class NativeInsertionSortOperation implements Operation<List<Integer>>, Variant<List<Integer>> {
+public class NativeInsertionSortOperation implements CancellableOperation<int[]>, SizedOperation<int[]>,
+        Variant<int[]> {
     static {
         System.loadLibrary("insertion_sort");
     }
 
     private static final String VARIANT_NAME = "Insertion sort (native) backup variant";
-    private final List<Integer> data;
-    private final double failureProbability;
+    private final int[] data;
+    private final FaultSchedule.Stream faults;
+    private final boolean inPlace;
+
+    /**
+     * Creates a {@link NativeInsertionSortOperation} object that sorts a copy of the array, and copies it back.
+     * @param data The array to be sorted.
+     * @param failureProbability The failure probability to be passed to the native module.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public NativeInsertionSortOperation(int[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, false);
+    }
 
     /**
      * Creates a {@link NativeInsertionSortOperation} object.
-     * @param data The list to be sorted.
+     * @param data The array to be sorted.
      * @param failureProbability The failure probability to be passed to the native module.
+     * @param inPlace True, for sorting {@code data} itself. The native code then works directly on the Java heap,
+     *                pinned with {@code GetPrimitiveArrayCritical}, without any copies. A failed or cancelled sort
+     *                can leave {@code data} partially modified, so it shouldn't be shared with another variant. The
+     *                garbage collector may be held off while the array is pinned, i.e. for the whole sort. False, for
+     *                sorting a copy made by {@code GetIntArrayElements}, that is only copied back into {@code data}
+     *                if the sort succeeds, so a failed or cancelled sort leaves {@code data} untouched. Either way,
+     *                the result is {@code data}.
      * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
      */
-    public NativeInsertionSortOperation(List<Integer> data, double failureProbability) throws IllegalArgumentException {
-        if (failureProbability < 0.0 || failureProbability > 1.0) {
-            throw new IllegalArgumentException("Failure probability needs to be between 0 and 1");
+    public NativeInsertionSortOperation(int[] data, double failureProbability, boolean inPlace)
+            throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), inPlace);
+    }
+
+    /**
+     * Creates a {@link NativeInsertionSortOperation} object that fails as scheduled.
+     * @param data The array to be sorted.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults, and passes their first failure point to the native module.
+     * @param inPlace True, for sorting {@code data} itself. See
+     *                {@link #NativeInsertionSortOperation(int[], double, boolean)}.
+     * @throws IllegalArgumentException Thrown if {@code faults} is null.
+     */
+    public NativeInsertionSortOperation(int[] data, FaultSchedule.Stream faults, boolean inPlace)
+            throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
         }
-        this.failureProbability = failureProbability;
+        this.faults = faults;
         this.data = data;
+        this.inPlace = inPlace;
     }
 
     /**
@@ -55,29 +92,31 @@ public class NativeInsertionSortOperation implements Operation<List<Integer>>, V
      * {@inheritDoc}
      */
     @Override
-    public List<Integer> execute() {
-        int[] dataArray = toPrimitiveArray(data);
-        this.insertionSort(dataArray, failureProbability);
-
-        return toJavaIntegerList(dataArray);
+    public int getInputSize() {
+        return data.length;
     }
 
-    private static ArrayList<Integer> toJavaIntegerList(int[] dataArray) {
-        ArrayList<Integer> list = new ArrayList<>();
-        for (int i : dataArray) {
-            list.add(i);
-        }
-        return list;
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
     }
 
-    private static int[] toPrimitiveArray(List<Integer> data) {
-        int[] dataArray = new int[data.size()];
-        for (int i = 0; i < data.size(); ++i) {
-            dataArray[i] = data.get(i);
-        }
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        // The native sort stops at its first failure, so that's all it needs of the faults
+        long failureAccess = faults.createFaults().getFailureAccess();
+        // Unless in place, the native code makes the only copy, so there's no need for one here
+        this.insertionSort(data, failureAccess, cancellationToken.getNativeFlag(), inPlace);
 
-        return dataArray;
+        return data;
     }
 
-    private native void insertionSort(int[] data, double failureProbability);
+    private native void insertionSort(int[] data, long failureAccess, ByteBuffer cancellationFlag,
+                                   boolean inPlace);
 }
@@ -0,0 +1,122 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * A Java {@link Variant} wrapper for sorting an int array using the native introsort lib. O(n log n) in the worst
+ * case, unlike the {@link NativeInsertionSortOperation}, with the same simulated memory access failures. By default,
+ * the native code sorts a copy of the input array, that is only copied back once it's sorted. In place, the input
+ * array itself is pinned and sorted, without any copies; see {@link #NativeIntroSortOperation(int[], double, boolean)}.
+ * A "libintrosort.*" dynamic library should be present at runtime in the Java load path.
+ * * = platform specific extension
+ * The native sort polls the {@link CancellationToken} on every memory access, so a cancelled sort returns right away.
+ */
+public class NativeIntroSortOperation implements CancellableOperation<int[]>, SizedOperation<int[]>,
+        Variant<int[]> {
+    static {
+        System.loadLibrary("introsort");
+    }
+
+    private static final String VARIANT_NAME = "Introsort (native) backup variant";
+    private final int[] data;
+    private final FaultSchedule.Stream faults;
+    private final boolean inPlace;
+
+    /**
+     * Creates a {@link NativeIntroSortOperation} object that sorts a copy of the array, and copies it back.
+     * @param data The array to be sorted.
+     * @param failureProbability The failure probability to be passed to the native module.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public NativeIntroSortOperation(int[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, false);
+    }
+
+    /**
+     * Creates a {@link NativeIntroSortOperation} object.
+     * @param data The array to be sorted.
+     * @param failureProbability The failure probability to be passed to the native module.
+     * @param inPlace True, for sorting {@code data} itself. The native code then works directly on the Java heap,
+     *                pinned with {@code GetPrimitiveArrayCritical}, without any copies. A failed or cancelled sort
+     *                can leave {@code data} partially modified, so it shouldn't be shared with another variant. The
+     *                garbage collector may be held off while the array is pinned, i.e. for the whole sort. False, for
+     *                sorting a copy made by {@code GetIntArrayElements}, that is only copied back into {@code data}
+     *                if the sort succeeds, so a failed or cancelled sort leaves {@code data} untouched. Either way,
+     *                the result is {@code data}.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public NativeIntroSortOperation(int[] data, double failureProbability, boolean inPlace)
+            throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), inPlace);
+    }
+
+    /**
+     * Creates a {@link NativeIntroSortOperation} object that fails as scheduled.
+     * @param data The array to be sorted.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults, and passes their first failure point to the native module.
+     * @param inPlace True, for sorting {@code data} itself. See
+     *                {@link #NativeIntroSortOperation(int[], double, boolean)}.
+     * @throws IllegalArgumentException Thrown if {@code faults} is null.
+     */
+    public NativeIntroSortOperation(int[] data, FaultSchedule.Stream faults, boolean inPlace)
+            throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
+        this.faults = faults;
+        this.data = data;
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return VARIANT_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        // The native sort stops at its first failure, so that's all it needs of the faults
+        long failureAccess = faults.createFaults().getFailureAccess();
+        // Unless in place, the native code makes the only copy, so there's no need for one here
+        this.introSort(data, failureAccess, cancellationToken.getNativeFlag(), inPlace);
+
+        return data;
+    }
+
+    private native void introSort(int[] data, long failureAccess, ByteBuffer cancellationFlag,
+                                   boolean inPlace);
+}
@@ -0,0 +1,28 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An interface for creating the {@link Operation} that processes one piece of a larger input, e.g. a
+ * {@link RecoveryBlocksExecutor} for sorting one chunk of a file.
+ */
+public interface OperationFactory<T> {
+    /**
+     * Creates the {@link Operation} for the {@code input}.
+     * @param input The input of the operation. Owned by the operation from here on.
+     * @param offset The position of the {@code input} in the larger input, e.g. the index of the first element of a
+     *               chunk. The same on every run over the same input, so it can name the piece, e.g. for its
+     *               {@link FaultSchedule.Stream}s.
+     * @return The operation.
+     */
+    Operation<T> create(T input, long offset);
+}
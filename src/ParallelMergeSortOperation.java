@@ -0,0 +1,282 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A {@link Variant} for sorting an int array in place using a fork/join parallel merge sort. Both the sorting of the
+ * halves and the merging are split into parallel tasks, until they are below a sequential cutoff, so the sort scales
+ * with the parallelism of the {@link ForkJoinPool}.
+ *
+ * Every array access goes through a {@link RandomlyFailingIntArray}, like in the {@link IntHeapSortOperation}. The
+ * data and the scratch array share one {@link ConcurrentSimulatedMemoryFaults} per execution, so the accesses of all
+ * the tasks count towards one hazard. Every task looks up its thread's faults once, and accesses the arrays through
+ * them, so the inner loops don't pay for a thread local lookup per access. The {@link CancellationToken} is checked at
+ * the start of every task.
+ */
+public class ParallelMergeSortOperation implements CancellableOperation<int[]>, SizedOperation<int[]>,
+        Variant<int[]> {
+    /**
+     * The number of elements below which a task is no longer split, unless another one is given.
+     */
+    public static final int DEFAULT_SEQUENTIAL_CUTOFF = 8192;
+
+    private static final String VARIANT_NAME = "Parallel merge sort variant";
+    // Small runs are insertion sorted instead of merged
+    private static final int INSERTION_SORT_CUTOFF = 16;
+
+    private final int[] data;
+    private final FaultSchedule.Stream faults;
+    private final ForkJoinPool pool;
+    private final int sequentialCutoff;
+    private CancellationToken cancellationToken = null;
+    private ConcurrentSimulatedMemoryFaults sharedFaults = null;
+
+    /**
+     * Creates a {@link ParallelMergeSortOperation} object that runs on the common {@link ForkJoinPool}.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public ParallelMergeSortOperation(int[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, ForkJoinPool.commonPool(), DEFAULT_SEQUENTIAL_CUTOFF);
+    }
+
+    /**
+     * Creates a {@link ParallelMergeSortOperation} object.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @param pool The {@link ForkJoinPool} that runs the tasks. Its parallelism is the sort's parallelism, e.g.
+     *             {@code new ForkJoinPool(8)}. Can be shared between sorts.
+     * @param sequentialCutoff The number of elements below which a sort or merge task is done sequentially.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1, the {@code pool} is null, or
+     *                                  {@code sequentialCutoff} is not positive.
+     */
+    public ParallelMergeSortOperation(int[] data, double failureProbability, ForkJoinPool pool, int sequentialCutoff)
+            throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), pool, sequentialCutoff);
+    }
+
+    /**
+     * Creates a {@link ParallelMergeSortOperation} object that fails as scheduled.
+     * @param data The array to be sorted in place.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults, shared by all its tasks, so which task fails depends on their timing.
+     * @param pool The {@link ForkJoinPool} that runs the tasks.
+     * @param sequentialCutoff The number of elements below which a sort or merge task is done sequentially.
+     * @throws IllegalArgumentException Thrown if {@code faults} or {@code pool} is null, or {@code sequentialCutoff}
+     *                                  is not positive.
+     */
+    public ParallelMergeSortOperation(int[] data, FaultSchedule.Stream faults, ForkJoinPool pool,
+                                      int sequentialCutoff) throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("The fork/join pool can't be null.");
+        }
+        if (sequentialCutoff <= 0) {
+            throw new IllegalArgumentException("The sequential cutoff needs to be positive.");
+        }
+        this.data = data;
+        this.faults = faults;
+        this.pool = pool;
+        this.sequentialCutoff = sequentialCutoff;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return VARIANT_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        this.sharedFaults = new ConcurrentSimulatedMemoryFaults(faults.createFaults());
+        // The halves are sorted into the other array, and merged back, so nothing is copied after this
+        pool.invoke(new SortTask(data.clone(), data, 0, data.length));
+        return data;
+    }
+
+    /**
+     * Sorts {@code src[lo, hi)} into {@code dst[lo, hi)}. Both ranges need to hold the same elements to begin with.
+     */
+    private class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int[] dst;
+        private final int lo;
+        private final int hi;
+
+        public SortTask(int[] src, int[] dst, int lo, int hi) {
+            this.src = src;
+            this.dst = dst;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            cancellationToken.throwIfCancelled();
+            if (hi - lo <= sequentialCutoff) {
+                MemoryFaults threadFaults = sharedFaults.forCurrentThread();
+                sortSequentially(new RandomlyFailingIntArray(src, threadFaults),
+                        new RandomlyFailingIntArray(dst, threadFaults), lo, hi);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(dst, src, lo, mid), new SortTask(dst, src, mid, hi));
+            new MergeTask(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    /**
+     * Merges the sorted {@code src[lo1, hi1)} and {@code src[lo2, hi2)} into {@code dst}, starting at {@code dstLo}.
+     * Larger merges are split around the middle element of the longer range.
+     */
+    private class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src;
+        private final int lo1;
+        private final int hi1;
+        private final int lo2;
+        private final int hi2;
+        private final int[] dst;
+        private final int dstLo;
+
+        public MergeTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int dstLo) {
+            // The longer range first, so that it's the one being halved
+            boolean swap = hi1 - lo1 < hi2 - lo2;
+            this.src = src;
+            this.lo1 = swap ? lo2 : lo1;
+            this.hi1 = swap ? hi2 : hi1;
+            this.lo2 = swap ? lo1 : lo2;
+            this.hi2 = swap ? hi1 : hi2;
+            this.dst = dst;
+            this.dstLo = dstLo;
+        }
+
+        @Override
+        protected void compute() {
+            cancellationToken.throwIfCancelled();
+            MemoryFaults threadFaults = sharedFaults.forCurrentThread();
+            RandomlyFailingIntArray source = new RandomlyFailingIntArray(src, threadFaults);
+            RandomlyFailingIntArray destination = new RandomlyFailingIntArray(dst, threadFaults);
+            int length = (hi1 - lo1) + (hi2 - lo2);
+            if (length <= sequentialCutoff) {
+                merge(source, lo1, hi1, lo2, hi2, destination, dstLo);
+                return;
+            }
+
+            int mid1 = (lo1 + hi1) >>> 1;
+            int pivot = source.get(mid1);
+            // The first element of the second range that isn't smaller than the pivot
+            int low = lo2;
+            int high = hi2;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (source.get(mid) < pivot) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            int mid2 = low;
+            int dstMid = dstLo + (mid1 - lo1) + (mid2 - lo2);
+            destination.set(dstMid, pivot);
+
+            invokeAll(new MergeTask(src, lo1, mid1, lo2, mid2, dst, dstLo),
+                    new MergeTask(src, mid1 + 1, hi1, mid2, hi2, dst, dstMid + 1));
+        }
+    }
+
+    private static void sortSequentially(RandomlyFailingIntArray src, RandomlyFailingIntArray dst, int lo, int hi) {
+        if (hi - lo <= INSERTION_SORT_CUTOFF) {
+            for (int i = lo + 1; i < hi; ++i) {
+                int value = dst.get(i);
+                int j = i - 1;
+                int previous;
+                while (j >= lo && (previous = dst.get(j)) > value) {
+                    dst.set(j + 1, previous);
+                    --j;
+                }
+                dst.set(j + 1, value);
+            }
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        sortSequentially(dst, src, lo, mid);
+        sortSequentially(dst, src, mid, hi);
+        merge(src, lo, mid, mid, hi, dst, lo);
+    }
+
+    private static void merge(RandomlyFailingIntArray src, int lo1, int hi1, int lo2, int hi2,
+                              RandomlyFailingIntArray dst, int dstLo) {
+        int i = lo1;
+        int j = lo2;
+        int k = dstLo;
+        if (i < hi1 && j < hi2) {
+            // Every element is read once
+            int left = src.get(i);
+            int right = src.get(j);
+            while (true) {
+                if (right < left) {
+                    dst.set(k++, right);
+                    if (++j == hi2) {
+                        break;
+                    }
+                    right = src.get(j);
+                } else {
+                    dst.set(k++, left);
+                    if (++i == hi1) {
+                        break;
+                    }
+                    left = src.get(i);
+                }
+            }
+        }
+        while (i < hi1) {
+            dst.set(k++, src.get(i++));
+        }
+        while (j < hi2) {
+            dst.set(k++, src.get(j++));
+        }
+    }
+}
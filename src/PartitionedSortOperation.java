@@ -0,0 +1,161 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * An {@link Operation} for sorting an int array in chunks, each with its own recovery block, e.g. a
+ * {@link RecoveryBlocksExecutor}. The chunks are sorted in parallel, and merged once all of them are sorted.
+ *
+ * A recovery block that fails only costs its own chunk: the failed chunks are retried with a fresh recovery block,
+ * up to a limit, while the sorted ones are kept. Since the simulated memory access failures get more likely with
+ * every access a variant makes, small chunks also make every attempt much more likely to succeed, so the expected
+ * run time grows linearly with the input, instead of blowing up.
+ */
+public class PartitionedSortOperation implements Operation<int[]> {
+    private final int[] data;
+    private final int chunkSize;
+    private final int maxAttemptsPerChunk;
+    private final ExecutorService chunkExecutor;
+    private final OperationFactory<int[]> chunkSorterFactory;
+
+    /**
+     * Creates a {@link PartitionedSortOperation} object.
+     * @param data The array to be sorted. Not modified.
+     * @param chunkSize The number of elements per chunk. The last chunk can be smaller.
+     * @param maxAttemptsPerChunk The number of recovery blocks that a chunk gets, before the whole sort fails.
+     * @param chunkExecutor The {@link ExecutorService} that runs the recovery blocks of the chunks. Its number of
+     *                      threads is the number of chunks sorted at the same time.
+     * @param chunkSorterFactory Creates the recovery block that sorts a chunk. Called again for every retry, with a
+     *                           fresh copy of the chunk.
+     * @throws IllegalArgumentException Thrown if the sizes are not positive, or any of the objects is null.
+     */
+    public PartitionedSortOperation(int[] data, int chunkSize, int maxAttemptsPerChunk, ExecutorService chunkExecutor,
+                                    OperationFactory<int[]> chunkSorterFactory) throws IllegalArgumentException {
+        if (chunkSize <= 0 || maxAttemptsPerChunk <= 0) {
+            throw new IllegalArgumentException("The chunk size and the number of attempts need to be positive.");
+        }
+        if (data == null || chunkExecutor == null || chunkSorterFactory == null) {
+            throw new IllegalArgumentException("The data, the executor and the chunk sorter factory can't be null.");
+        }
+        this.data = data;
+        this.chunkSize = chunkSize;
+        this.maxAttemptsPerChunk = maxAttemptsPerChunk;
+        this.chunkExecutor = chunkExecutor;
+        this.chunkSorterFactory = chunkSorterFactory;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException Thrown if a chunk failed all its attempts.
+     */
+    @Override
+    public int[] execute() throws RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException {
+        int numberOfChunks = (int) (((long) data.length + chunkSize - 1) / chunkSize);
+        int[] sorted = new int[data.length];
+        List<Integer> pendingChunks = new ArrayList<>(numberOfChunks);
+        for (int chunk = 0; chunk < numberOfChunks; ++chunk) {
+            pendingChunks.add(chunk);
+        }
+
+        for (int attempt = 1; attempt <= maxAttemptsPerChunk && !pendingChunks.isEmpty(); ++attempt) {
+            if (attempt > 1) {
+                System.err.println(String.format("%d of %d chunk(s) failed. Retrying them (attempt %d of %d).",
+                        pendingChunks.size(), numberOfChunks, attempt, maxAttemptsPerChunk));
+            }
+            pendingChunks = sortChunks(pendingChunks, sorted);
+        }
+        if (!pendingChunks.isEmpty()) {
+            throw new RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException();
+        }
+
+        return merge(sorted);
+    }
+
+    /**
+     * Sorts the chunks in parallel, into their ranges of {@code sorted}.
+     * @return The chunks whose recovery blocks failed.
+     */
+    private List<Integer> sortChunks(List<Integer> chunks, final int[] sorted) {
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        for (final int chunk : chunks) {
+            final int lo = chunk * chunkSize;
+            final int hi = (int) Math.min(data.length, (long) lo + chunkSize);
+            futures.add(chunkExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    int[] result = chunkSorterFactory.create(Arrays.copyOfRange(data, lo, hi), lo).execute();
+                    System.arraycopy(result, 0, sorted, lo, hi - lo);
+                    return null;
+                }
+            }));
+        }
+
+        List<Integer> failedChunks = new ArrayList<>();
+        for (int i = 0; i < futures.size(); ++i) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                for (Future<?> future : futures) {
+                    future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException)) {
+                    throw new RuntimeException("Developer note: Unexpected chunk failure. Bug in the code.",
+                            e.getCause());
+                }
+                failedChunks.add(chunks.get(i));
+            }
+        }
+        return failedChunks;
+    }
+
+    /**
+     * Merges the sorted chunks bottom-up, doubling the run length on every pass.
+     */
+    private int[] merge(int[] sorted) {
+        int[] src = sorted;
+        int[] dst = new int[sorted.length];
+        for (long width = chunkSize; width < sorted.length; width *= 2) {
+            for (long lo = 0; lo < sorted.length; lo += 2 * width) {
+                int mid = (int) Math.min(sorted.length, lo + width);
+                int hi = (int) Math.min(sorted.length, lo + 2 * width);
+                merge(src, (int) lo, mid, hi, dst);
+            }
+            int[] temp = src;
+            src = dst;
+            dst = temp;
+        }
+        return src;
+    }
+
+    private static void merge(int[] src, int lo, int mid, int hi, int[] dst) {
+        int i = lo;
+        int j = mid;
+        for (int k = lo; k < hi; ++k) {
+            if (j >= hi || (i < mid && src[i] <= src[j])) {
+                dst[k] = src[i++];
+            } else {
+                dst[k] = src[j++];
+            }
+        }
+    }
+}
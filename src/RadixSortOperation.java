@@ -0,0 +1,181 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * A {@link Variant} for sorting an int array in place using the least significant digit first radix sort. Needs
+ * {@code ceil(32 / digitBits)} counting passes over the array, and no comparisons. The sign bit is flipped while
+ * extracting the digits, so negative ints sort before the positive ones. Passes in which all the elements have the
+ * same digit are skipped.
+ *
+ * Both the array and the scratch array are accessed through {@link RandomlyFailingIntArray}s sharing one
+ * {@link SimulatedMemoryFaults}, so that their accesses count towards the same hazard. The
+ * {@link CancellationToken} is checked on every pass, and every 65536 elements within one.
+ */
+public class RadixSortOperation implements CancellableOperation<int[]>, SizedOperation<int[]>, Variant<int[]> {
+    /**
+     * The digit size used unless another one is given. 4 passes, with histograms that fit in the L1 cache.
+     */
+    public static final int DEFAULT_DIGIT_BITS = 8;
+
+    private static final String VARIANT_NAME = "Radix sort variant";
+    private static final int CANCELLATION_CHECK_INTERVAL = 1 << 16;
+
+    private final int[] data;
+    private final FaultSchedule.Stream faults;
+    private final int digitBits;
+    private CancellationToken cancellationToken = null;
+
+    /**
+     * Creates a {@link RadixSortOperation} object using {@link #DEFAULT_DIGIT_BITS} bit digits.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public RadixSortOperation(int[] data, double failureProbability) throws IllegalArgumentException {
+        this(data, failureProbability, DEFAULT_DIGIT_BITS);
+    }
+
+    /**
+     * Creates a {@link RadixSortOperation} object.
+     * @param data The array to be sorted in place.
+     * @param failureProbability The failure probability of the simulated memory accesses. 0, for no failures.
+     * @param digitBits The number of bits sorted on per pass, e.g. 8 for 4 passes, or 11 for 3 passes.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1, or {@code digitBits} is not
+     *                                  between 1 and 16.
+     */
+    public RadixSortOperation(int[] data, double failureProbability, int digitBits) throws IllegalArgumentException {
+        this(data, FaultSchedule.unseeded().stream(VARIANT_NAME, failureProbability), digitBits);
+    }
+
+    /**
+     * Creates a {@link RadixSortOperation} object that fails as scheduled.
+     * @param data The array to be sorted in place.
+     * @param faults The {@link FaultSchedule.Stream} of the simulated memory access failures. Every execution
+     *               creates its own faults.
+     * @param digitBits The number of bits sorted on per pass, e.g. 8 for 4 passes, or 11 for 3 passes.
+     * @throws IllegalArgumentException Thrown if {@code faults} is null, or {@code digitBits} is not between 1 and
+     *                                  16.
+     */
+    public RadixSortOperation(int[] data, FaultSchedule.Stream faults, int digitBits) throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
+        if (digitBits < 1 || digitBits > 16) {
+            throw new IllegalArgumentException("The digit size needs to be between 1 and 16 bits.");
+        }
+        this.data = data;
+        this.faults = faults;
+        this.digitBits = digitBits;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return VARIANT_NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInputSize() {
+        return data.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute() {
+        return execute(new CancellationToken());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] execute(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        SimulatedMemoryFaults sharedFaults = faults.createFaults();
+        RandomlyFailingIntArray array = new RandomlyFailingIntArray(data, sharedFaults);
+        RandomlyFailingIntArray src = array;
+        RandomlyFailingIntArray dst = new RandomlyFailingIntArray(new int[data.length], sharedFaults);
+        int[] counts = new int[1 << digitBits];
+        int mask = (1 << digitBits) - 1;
+        for (int shift = 0; shift < 32; shift += digitBits) {
+            if (sortByDigit(src, dst, counts, shift, mask)) {
+                RandomlyFailingIntArray temp = src;
+                src = dst;
+                dst = temp;
+            }
+        }
+
+        if (src != array) {
+            // An odd number of passes left the result in the scratch array
+            for (int i = 0; i < data.length; ++i) {
+                checkCancellation(i);
+                array.set(i, src.get(i));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Stably sorts {@code src} into {@code dst} by one digit.
+     * @return True, if the elements were moved to {@code dst}. False, if the pass was skipped, since all the
+     * elements have the same digit.
+     */
+    private boolean sortByDigit(RandomlyFailingIntArray src, RandomlyFailingIntArray dst, int[] counts, int shift,
+                                int mask) {
+        cancellationToken.throwIfCancelled();
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < src.length(); ++i) {
+            checkCancellation(i);
+            ++counts[digit(src.get(i), shift, mask)];
+        }
+        for (int count : counts) {
+            if (count == src.length()) {
+                return false;
+            }
+        }
+
+        // The counts become the start offsets of the digits
+        int offset = 0;
+        for (int d = 0; d < counts.length; ++d) {
+            int count = counts[d];
+            counts[d] = offset;
+            offset += count;
+        }
+        for (int i = 0; i < src.length(); ++i) {
+            checkCancellation(i);
+            int value = src.get(i);
+            dst.set(counts[digit(value, shift, mask)]++, value);
+        }
+        return true;
+    }
+
+    private static int digit(int value, int shift, int mask) {
+        // Flipping the sign bit makes the unsigned digit order match the signed int order
+        return ((value ^ Integer.MIN_VALUE) >>> shift) & mask;
+    }
+
+    private void checkCancellation(int index) {
+        if ((index & (CANCELLATION_CHECK_INTERVAL - 1)) == 0) {
+            cancellationToken.throwIfCancelled();
+        }
+    }
+}
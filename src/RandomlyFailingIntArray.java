@@ -0,0 +1,104 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An int array that randomly throws {@link MemoryAccessFailureException} on its accesses, through
+ * {@link SimulatedMemoryFaults}. The primitive counterpart of the {@link RandomlyFailingList}, with the same hazard
+ * model, but no boxing and no allocations, so it can back the primitive sort variants.
+ * Every {@link #get(int)} and {@link #set(int, int)} is an access that can fail, and fails before touching the
+ * array. {@link #length()} and {@link #getArray()} can't fail. Threads can share the array for disjoint elements,
+ * if its faults are thread safe, e.g. {@link ConcurrentSimulatedMemoryFaults}.
+ */
+public final class RandomlyFailingIntArray {
+    private final int[] elements;
+    private final MemoryFaults faults;
+
+    /**
+     * Creates a {@link RandomlyFailingIntArray} object with its own access count.
+     * @param elements The array holding the elements. Accessed directly, not copied.
+     * @param failureProbability The failure probability of an access, which grows with the number of accesses.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public RandomlyFailingIntArray(int[] elements, double failureProbability) throws IllegalArgumentException {
+        this(elements, new SimulatedMemoryFaults(failureProbability));
+    }
+
+    /**
+     * Creates a {@link RandomlyFailingIntArray} object, that counts its accesses together with the other users of
+     * the {@code faults}, e.g. the scratch array of the same sort.
+     * @param elements The array holding the elements. Accessed directly, not copied.
+     * @param faults The {@link MemoryFaults} of the accesses, e.g. {@link ConcurrentSimulatedMemoryFaults} for an
+     *               array whose elements are split between threads.
+     * @throws IllegalArgumentException Thrown if either of the arguments is null.
+     */
+    public RandomlyFailingIntArray(int[] elements, MemoryFaults faults) throws IllegalArgumentException {
+        if (elements == null || faults == null) {
+            throw new IllegalArgumentException("The elements and the faults can't be null.");
+        }
+        this.elements = elements;
+        this.faults = faults;
+    }
+
+    /**
+     * Gets an element.
+     * @param index The index of the element.
+     * @return The element.
+     * @throws MemoryAccessFailureException Thrown if a failure is simulated for this access.
+     */
+    public int get(int index) throws MemoryAccessFailureException {
+        faults.access();
+        return elements[index];
+    }
+
+    /**
+     * Sets an element.
+     * @param index The index of the element.
+     * @param value The new value of the element.
+     * @throws MemoryAccessFailureException Thrown if a failure is simulated for this access. The element is left
+     *                                      unchanged then.
+     */
+    public void set(int index, int value) throws MemoryAccessFailureException {
+        faults.access();
+        elements[index] = value;
+    }
+
+    /**
+     * Swaps two elements. Counts as 4 accesses, 2 reads and 2 writes, like swapping them through a
+     * {@link java.util.List}.
+     * @param i The index of an element.
+     * @param j The index of the other element.
+     * @throws MemoryAccessFailureException Thrown if a failure is simulated for one of the accesses. The first
+     *                                      write can already have happened then.
+     */
+    public void swap(int i, int j) throws MemoryAccessFailureException {
+        int temp = get(i);
+        set(i, get(j));
+        set(j, temp);
+    }
+
+    /**
+     * Gets the number of elements. Can't fail.
+     * @return The length of the array.
+     */
+    public int length() {
+        return elements.length;
+    }
+
+    /**
+     * Gets the underlying array, e.g. for returning the result of a sort. Can't fail.
+     * @return The array holding the elements.
+     */
+    public int[] getArray() {
+        return elements;
+    }
+}
@@ -20,15 +20,55 @@ import java.util.*;
  * can throw this exception, except the {@link RandomlyFailingList#toArray()} and
  * {@link RandomlyFailingList#toArray(Object[])} method calls.
  *
+ * Not thread safe by default. A list shared between threads needs a thread safe inner list, or threads working on
+ * disjoint elements, and {@link ConcurrentSimulatedMemoryFaults}; see
+ * {@link #concurrent(List, double)}.
+ *
  * Created by rishi on 2016-02-20.
  */
 public class RandomlyFailingList<E> implements List<E> {
     private final List<E> elements;
-    private final RandomlyFailingOperationWrapper operationWrapper;
+    private final MemoryFaults faults;
 
+    /**
+     * Creates a {@link RandomlyFailingList} object.
+     * @param innerList The list holding the elements.
+     * @param failureProbability The failure probability of an operation, which grows with the number of operations.
+     *                           See {@link SimulatedMemoryFaults}.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
     public RandomlyFailingList(List<E> innerList, double failureProbability) throws IllegalArgumentException {
+        this(innerList, new SimulatedMemoryFaults(failureProbability));
+    }
+
+    /**
+     * Creates a {@link RandomlyFailingList} object that fails as the {@code faults} do, e.g. seeded or replayed
+     * ones from a {@link FaultSchedule}.
+     * @param innerList The list holding the elements.
+     * @param faults The {@link MemoryFaults} of the operations.
+     * @throws IllegalArgumentException Thrown if the {@code faults} are null.
+     */
+    public RandomlyFailingList(List<E> innerList, MemoryFaults faults) throws IllegalArgumentException {
+        if (faults == null) {
+            throw new IllegalArgumentException("The faults can't be null.");
+        }
         elements = innerList;
-        operationWrapper = new RandomlyFailingOperationWrapper(failureProbability);
+        this.faults = faults;
+    }
+
+    /**
+     * Creates a {@link RandomlyFailingList} that can be shared between threads, e.g. the workers of a parallel sort.
+     * The accesses of all the threads count towards one hazard, through {@link ConcurrentSimulatedMemoryFaults}.
+     * @param innerList The list holding the elements. Needs to be thread safe, unless the threads only get and set
+     *                  disjoint elements.
+     * @param failureProbability The failure probability of an operation, which grows with the number of operations
+     *                           over all the threads.
+     * @return The list.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public static <E> RandomlyFailingList<E> concurrent(List<E> innerList, double failureProbability)
+            throws IllegalArgumentException {
+        return new RandomlyFailingList<>(innerList, new ConcurrentSimulatedMemoryFaults(failureProbability));
     }
 
     /**
@@ -36,12 +76,8 @@ public class RandomlyFailingList<E> implements List<E> {
      */
     @Override
     public int size() {
-        return operationWrapper.execute(new Operation<Integer>() {
-            @Override
-            public Integer execute() {
-                return elements.size();
-            }
-        });
+        faults.access();
+        return elements.size();
     }
 
     /**
@@ -49,25 +85,17 @@ public class RandomlyFailingList<E> implements List<E> {
      */
     @Override
     public boolean isEmpty() {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.isEmpty();
-            }
-        });
+        faults.access();
+        return elements.isEmpty();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean contains(final Object o) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.contains(o);
-            }
-        });
+    public boolean contains(Object o) {
+        faults.access();
+        return elements.contains(o);
     }
 
     /**
@@ -75,7 +103,6 @@ public class RandomlyFailingList<E> implements List<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        ArrayList<Integer> a = new ArrayList<>();
         return new RandomlyFailingIterator();
     }
 
@@ -101,91 +128,63 @@ public class RandomlyFailingList<E> implements List<E> {
      * {@inheritDoc}
      */
     @Override
-    public boolean add(final E e) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.add(e);
-            }
-        });
+    public boolean add(E e) {
+        faults.access();
+        return elements.add(e);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean remove(final Object o) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.remove(o);
-            }
-        });
+    public boolean remove(Object o) {
+        faults.access();
+        return elements.remove(o);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean containsAll(final Collection<?> c) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.containsAll(c);
-            }
-        });
+    public boolean containsAll(Collection<?> c) {
+        faults.access();
+        return elements.containsAll(c);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean addAll(final Collection<? extends E> c) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.addAll(c);
-            }
-        });
+    public boolean addAll(Collection<? extends E> c) {
+        faults.access();
+        return elements.addAll(c);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean addAll(final int index, final Collection<? extends E> c) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.addAll(index, c);
-            }
-        });
+    public boolean addAll(int index, Collection<? extends E> c) {
+        faults.access();
+        return elements.addAll(index, c);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean removeAll(final Collection<?> c) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.removeAll(c);
-            }
-        });
+    public boolean removeAll(Collection<?> c) {
+        faults.access();
+        return elements.removeAll(c);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public boolean retainAll(final Collection<?> c) {
-        return operationWrapper.execute(new Operation<Boolean>() {
-            @Override
-            public Boolean execute() {
-                return elements.retainAll(c);
-            }
-        });
+    public boolean retainAll(Collection<?> c) {
+        faults.access();
+        return elements.retainAll(c);
     }
 
     /**
@@ -193,92 +192,62 @@ public class RandomlyFailingList<E> implements List<E> {
      */
     @Override
     public void clear() {
-        operationWrapper.execute(new Operation<Void>() {
-            @Override
-            public Void execute() {
-                elements.clear();
-                return null;
-            }
-        });
+        faults.access();
+        elements.clear();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public E get(final int index) {
-        return operationWrapper.execute(new Operation<E>() {
-            @Override
-            public E execute() {
-                return elements.get(index);
-            }
-        });
+    public E get(int index) {
+        faults.access();
+        return elements.get(index);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public E set(final int index, final E element) {
-        return operationWrapper.execute(new Operation<E>() {
-            @Override
-            public E execute() {
-                return elements.set(index, element);
-            }
-        });
+    public E set(int index, E element) {
+        faults.access();
+        return elements.set(index, element);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void add(final int index, final E element) {
-        operationWrapper.execute(new Operation<Void>() {
-            @Override
-            public Void execute() {
-                elements.add(index, element);
-                return null;
-            }
-        });
+    public void add(int index, E element) {
+        faults.access();
+        elements.add(index, element);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public E remove(final int index) {
-        return operationWrapper.execute(new Operation<E>() {
-            @Override
-            public E execute() {
-                return elements.remove(index);
-            }
-        });
+    public E remove(int index) {
+        faults.access();
+        return elements.remove(index);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public int indexOf(final Object o) {
-        return operationWrapper.execute(new Operation<Integer>() {
-            @Override
-            public Integer execute() {
-                return elements.indexOf(o);
-            }
-        });
+    public int indexOf(Object o) {
+        faults.access();
+        return elements.indexOf(o);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public int lastIndexOf(final Object o) {
-        return operationWrapper.execute(new Operation<Integer>() {
-            @Override
-            public Integer execute() {
-                return elements.lastIndexOf(o);
-            }
-        });
+    public int lastIndexOf(Object o) {
+        faults.access();
+        return elements.lastIndexOf(o);
     }
 
     /**
@@ -301,42 +270,9 @@ public class RandomlyFailingList<E> implements List<E> {
      * {@inheritDoc}
      */
     @Override
-    public List<E> subList(final int fromIndex, final int toIndex) {
-        return operationWrapper.execute(new Operation<List<E>>() {
-            @Override
-            public List<E> execute() {
-                return elements.subList(fromIndex, toIndex);
-            }
-        });
-    }
-
-    private static class RandomlyFailingOperationWrapper {
-        private final double failureProbability;
-        private long count = 0;
-
-        public RandomlyFailingOperationWrapper(double failureProbability) throws IllegalArgumentException {
-            if (failureProbability > 1.0 || failureProbability < 0.0) {
-                throw new IllegalArgumentException("Failure Probability needs to be between 0 and 1.");
-            }
-
-            this.failureProbability = failureProbability;
-        }
-
-        public <T> T execute(Operation<T> operation) {
-            ++count;
-            if (shouldFail()) {
-                throw new MemoryAccessFailureException("Random simulated failure event.");
-            }
-
-            return operation.execute();
-        }
-
-        private boolean shouldFail() {
-            double hazard = count * failureProbability;
-            Random rand = new Random();
-            double randomEvent = rand.nextDouble();
-            return randomEvent >= 0.5 && randomEvent <= 0.5 + hazard;
-        }
+    public List<E> subList(int fromIndex, int toIndex) {
+        faults.access();
+        return elements.subList(fromIndex, toIndex);
     }
 
     private class RandomlyFailingIterator implements Iterator<E> {
@@ -348,33 +284,20 @@ public class RandomlyFailingList<E> implements List<E> {
 
         @Override
         public boolean hasNext() {
-            return operationWrapper.execute(new Operation<Boolean>() {
-                @Override
-                public Boolean execute() {
-                    return iterator.hasNext();
-                }
-            });
+            faults.access();
+            return iterator.hasNext();
         }
 
         @Override
         public E next() {
-            return operationWrapper.execute(new Operation<E>() {
-                @Override
-                public E execute() {
-                    return iterator.next();
-                }
-            });
+            faults.access();
+            return iterator.next();
         }
 
         @Override
         public void remove() {
-            operationWrapper.execute(new Operation<Void>() {
-                @Override
-                public Void execute() {
-                    iterator.remove();
-                    return null;
-                }
-            });
+            faults.access();
+            iterator.remove();
         }
     }
 
@@ -391,95 +314,56 @@ public class RandomlyFailingList<E> implements List<E> {
 
         @Override
         public boolean hasNext() {
-            return operationWrapper.execute(new Operation<Boolean>() {
-                @Override
-                public Boolean execute() {
-                    return listIterator.hasNext();
-                }
-            });
+            faults.access();
+            return listIterator.hasNext();
         }
 
         @Override
         public E next() {
-            return operationWrapper.execute(new Operation<E>() {
-                @Override
-                public E execute() {
-                    return listIterator.next();
-                }
-            });
+            faults.access();
+            return listIterator.next();
         }
 
         @Override
         public boolean hasPrevious() {
-            return operationWrapper.execute(new Operation<Boolean>() {
-                @Override
-                public Boolean execute() {
-                    return listIterator.hasPrevious();
-                }
-            });
+            faults.access();
+            return listIterator.hasPrevious();
         }
 
         @Override
         public E previous() {
-            return operationWrapper.execute(new Operation<E>() {
-                @Override
-                public E execute() {
-                    return listIterator.previous();
-                }
-            });
+            faults.access();
+            return listIterator.previous();
         }
 
         @Override
         public int nextIndex() {
-            return operationWrapper.execute(new Operation<Integer>() {
-                @Override
-                public Integer execute() {
-                    return listIterator.nextIndex();
-                }
-            });
+            faults.access();
+            return listIterator.nextIndex();
         }
 
         @Override
         public int previousIndex() {
-            return operationWrapper.execute(new Operation<Integer>() {
-                @Override
-                public Integer execute() {
-                    return listIterator.previousIndex();
-                }
-            });
+            faults.access();
+            return listIterator.previousIndex();
         }
 
         @Override
         public void remove() {
-            operationWrapper.execute(new Operation<Void>() {
-                @Override
-                public Void execute() {
-                    listIterator.remove();
-                    return null;
-                }
-            });
+            faults.access();
+            listIterator.remove();
         }
 
         @Override
-        public void set(final E e) {
-            operationWrapper.execute(new Operation<Void>() {
-                @Override
-                public Void execute() {
-                    listIterator.set(e);
-                    return null;
-                }
-            });
+        public void set(E e) {
+            faults.access();
+            listIterator.set(e);
         }
 
         @Override
-        public void add(final E e) {
-            operationWrapper.execute(new Operation<Void>() {
-                @Override
-                public Void execute() {
-                    listIterator.add(e);
-                    return null;
-                }
-            });
+        public void add(E e) {
+            faults.access();
+            listIterator.add(e);
         }
     }
 }
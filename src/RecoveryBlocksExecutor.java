@@ -12,29 +12,59 @@
  */
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Timer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * A fault tolerant executive and adjudicator that can use multiple {@link Variant} objects to perform a computation
  * and obtain the results.
  *
  * The failure may be because of an unhandled exception within the execution of a variant, or the run time
- * exceeds a specified maximum run time, or the result doesn't pass the {@code acceptanceTest}, if any.
+ * exceeds the maximum run time given by a {@link DeadlinePolicy}, or the result doesn't pass the
+ * {@code acceptanceTest}, if any.
  *
- * Uses the {@link OperationThread} to run the variants in a multithreaded manner.
+ * The variants can either be tried one after another ({@link ExecutionMode#SEQUENTIAL}), be raced against each
+ * other ({@link ExecutionMode#CONCURRENT}), or be started speculatively once the previous one runs late
+ * ({@link ExecutionMode#HEDGED}). See {@link ExecutionMode}.
+ *
+ * Uses a {@link VariantExecutionBackend} to run the variants in a multithreaded manner, without creating platform
+ * threads per execution.
  * Uses {@link AcceptanceTest} to validate the results of the variants.
- * Uses {@link Watchdog} for preemption if needed.
+ * Uses the pool's {@link Watchdog} for preemption if needed.
+ * Records the outcomes of the variants in a {@link MetricsRegistry}, if one is set.
  * Created by rishi on 2016-02-20.
  */
 public class RecoveryBlocksExecutor<T> implements Operation<T> {
+    // Prints the local failure reports, like the blocking execute() always has
+    private static final VariantFailureListener STDERR_FAILURE_LISTENER = new VariantFailureListener() {
+        @Override
+        public void onVariantFailure(Variant<?> failedVariant, String failureReport) {
+            System.err.println(failureReport);
+        }
+    };
+
     private final List<Variant<T>> variants;
-    private final long variantTimeLimitMilliseconds;
+    private final DeadlinePolicy deadlinePolicy;
     private final AcceptanceTest<T> acceptanceTest;
+    private final ExecutionMode executionMode;
+    private final VariantExecutionBackend executionBackend;
+    private final LatencyHistory latencyHistory;
+    private final double hedgingPercentile;
+    private final AdaptiveVariantOrdering variantOrdering;
+    private final MetricsRegistry metricsRegistry;
 
     /**
-     * Creates a new instance of {@link RecoveryBlocksExecutor}.
+     * Creates a new instance of {@link RecoveryBlocksExecutor} that runs the variants sequentially. Use a
+     * {@link Builder} for the other options.
      * @param variantTimeLimitMilliseconds The maximum time that a {@link Variant} be allowed to run, before
      *                                     preempting it.
      * @param acceptanceTest The {@link AcceptanceTest} for validating the result for correctness. Can be null,
@@ -43,79 +73,549 @@ public class RecoveryBlocksExecutor<T> implements Operation<T> {
      * @param backupVariants 0 or more backup {@link Variant}s that will be used if the {@code primaryVariant} fails.
      * @throws IllegalArgumentException Thrown if {@code variantTimeLimitMilliseconds} is negative.
      */
-    // Needed because of possible unsafe use of varargs. Safe here
+    // Safe, since the array is only passed on to Builder#addBackupVariants, which is safe too
     @SafeVarargs
+    @SuppressWarnings("varargs")
     public RecoveryBlocksExecutor(long variantTimeLimitMilliseconds,
                                   AcceptanceTest<T> acceptanceTest,
                                   final Variant<T> primaryVariant,
                                   final Variant<T>... backupVariants) throws IllegalArgumentException {
+        this(new Builder<>(variantTimeLimitMilliseconds, acceptanceTest, primaryVariant)
+                .addBackupVariants(backupVariants));
+    }
 
-        if (variantTimeLimitMilliseconds < 0) {
-            throw new IllegalArgumentException("The time limit for variants can't be negative.");
+    private RecoveryBlocksExecutor(Builder<T> builder) throws IllegalArgumentException {
+        if (builder.executionMode == null) {
+            throw new IllegalArgumentException("The execution mode can't be null.");
         }
-        variants = new ArrayList<>(Arrays.asList(backupVariants));
-        variants.add(0, primaryVariant);
+        if (builder.executionBackend == null) {
+            throw new IllegalArgumentException("The execution backend can't be null.");
+        }
+        if (builder.executionMode == ExecutionMode.HEDGED && builder.latencyHistory == null) {
+            throw new IllegalArgumentException("The hedged execution mode needs a latency history.");
+        }
+        variants = new ArrayList<>(builder.variants);
 
-        this.variantTimeLimitMilliseconds = variantTimeLimitMilliseconds;
-        this.acceptanceTest = acceptanceTest;
+        this.deadlinePolicy = builder.deadlinePolicy;
+        this.acceptanceTest = builder.acceptanceTest;
+        this.executionMode = builder.executionMode;
+        this.executionBackend = builder.executionBackend;
+        this.latencyHistory = builder.latencyHistory;
+        this.hedgingPercentile = builder.hedgingPercentile;
+        this.variantOrdering = builder.variantOrdering;
+        this.metricsRegistry = builder.metricsRegistry;
     }
 
 
     /**
-     * Executes all the {@link Variant}s, starting with the primary one, until one gives a failure free
-     * acceptable result. Prints the success and erroneous statuses to stdout and stderr (variant failures),
-     * respectively.
+     * Executes the {@link Variant}s according to the {@link ExecutionMode}, until one gives a failure free
+     * acceptable result. Blocks until the result is available. Prints the success and erroneous statuses to stdout
+     * and stderr (variant failures), respectively.
      *
      * @return The successful result.
      * @throws RecoveryBlocksSystemFailedException Thrown if no {@link Variant} succeeded.
+     * @throws RejectedExecutionException Thrown if the {@link VariantExecutionBackend} couldn't start a variant, e.g.
+     *                                    because it's been shut down.
      */
     @Override
-    public T execute() throws RecoveryBlocksSystemFailedException {
+    public T execute() throws RecoveryBlocksSystemFailedException, RejectedExecutionException {
         // Executive thread
-        for (Variant<T> variant : variants) {
-            Timer timer = new Timer();
-            OperationThread<T> variantThread = new OperationThread<>(variant);
-            Watchdog watchdog = new Watchdog(variantThread);
-            timer.schedule(watchdog, variantTimeLimitMilliseconds);
+        CompletableFuture<T> result = executeAsync(STDERR_FAILURE_LISTENER);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            // The executive itself was interrupted; give up on all the variants
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RecoveryBlocksSystemFailedException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RecoveryBlocksSystemFailedException) {
+                throw (RecoveryBlocksSystemFailedException) e.getCause();
+            }
+            if (e.getCause() instanceof RejectedExecutionException) {
+                // The execution backend couldn't start a variant
+                throw (RejectedExecutionException) e.getCause();
+            }
+            throw new RuntimeException("Developer note: Unexpected execution failure. Bug in the code.", e);
+        }
+    }
+
+    /**
+     * Starts executing the {@link Variant}s according to the {@link ExecutionMode}, without blocking the calling
+     * thread. Prints the success status to stdout.
+     *
+     * @param failureListener Notified of every {@link Variant} failure (the local exceptions), on the thread that
+     *                        noticed it. Shouldn't block. Can be null, if the failures don't need to be reported.
+     * @return A future for the successful result. Completes exceptionally with a
+     * {@link RecoveryBlocksSystemFailedException} if no {@link Variant} succeeded, or with the exception of the
+     * {@link VariantExecutionBackend} if it couldn't start a variant. Cancelling it cancels the running variants.
+     */
+    public CompletableFuture<T> executeAsync(VariantFailureListener failureListener) {
+        List<Variant<T>> orderedVariants = variantOrdering == null ? variants : variantOrdering.order(variants);
+        Execution execution = new Execution(orderedVariants, failureListener);
+        execution.start();
+        return execution.result;
+    }
+
+    /**
+     * The state of a single (asynchronous) execution of the recovery block. Driven by the completion callbacks of
+     * the {@link VariantHandle}s, and by the hedging timer, so no thread is blocked while the variants run.
+     */
+    private class Execution {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final VariantFailureListener failureListener;
+        // All guarded by 'this'
+        private final Iterator<Variant<T>> pendingVariants;
+        private final Map<VariantHandle<T>, Variant<T>> runningVariants = new LinkedHashMap<>();
+        // The most recently started variant, while it's still running. Outside of the CONCURRENT mode, the next
+        // variant is started once it fails or, in the HEDGED mode, runs late.
+        private VariantHandle<T> newestHandle = null;
+        private ScheduledFuture<?> hedge = null;
+        // The finished variants whose outcome isn't known yet
+        private int adjudicatingVariants = 0;
+        private boolean finished = false;
+
+        public Execution(List<Variant<T>> variants, VariantFailureListener failureListener) {
+            this.pendingVariants = variants.iterator();
+            this.failureListener = failureListener;
+        }
+
+        public void start() {
+            RuntimeException startFailure;
+            synchronized (this) {
+                do {
+                    startFailure = startNextVariant();
+                } while (startFailure == null && executionMode == ExecutionMode.CONCURRENT &&
+                        pendingVariants.hasNext());
+            }
+            if (startFailure != null) {
+                failToStart(startFailure);
+                return;
+            }
+
+            result.whenComplete(new BiConsumer<T, Throwable>() {
+                @Override
+                public void accept(T value, Throwable failure) {
+                    if (result.isCancelled()) {
+                        finish();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Starts the next pending variant. Needs the lock.
+         * @return Null, or the exception thrown by the execution backend if it couldn't start the variant, e.g. a
+         * {@link RejectedExecutionException} once it's shut down. The execution needs to be
+         * failed with it then, through {@link #failToStart(RuntimeException)} outside the lock.
+         */
+        private RuntimeException startNextVariant() {
+            final Variant<T> variant = pendingVariants.next();
+            final VariantHandle<T> variantHandle;
             try {
-                try {
-                    variantThread.start();
-                    variantThread.join();
-                    timer.cancel();
-
-                    // Adjudicator
-                    if (variantThread.isKilled()) {
-                        throw new VariantFailureException(variant, "Timed out.");
+                variantHandle = executionBackend.submit(variant, getTimeLimitMilliseconds(variant),
+                        new Consumer<VariantHandle<T>>() {
+                            @Override
+                            public void accept(VariantHandle<T> finishedHandle) {
+                                onVariantFinished(finishedHandle);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                return e;
+            }
+            // The completion callback needs the lock, so it can't run before the handle is registered
+            runningVariants.put(variantHandle, variant);
+            newestHandle = variantHandle;
+
+            long hedgeDelayNanos;
+            if (executionMode == ExecutionMode.HEDGED && pendingVariants.hasNext() &&
+                    (hedgeDelayNanos = getHedgeDelayNanos(variant)) >= 0) {
+                hedge = executionBackend.getWatchdog().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        onVariantLate(variantHandle);
                     }
+                }, hedgeDelayNanos);
+            }
+            return null;
+        }
+
+        /**
+         * Fails the execution, since a variant couldn't be started.
+         */
+        private void failToStart(RuntimeException startFailure) {
+            if (finish()) {
+                result.completeExceptionally(startFailure);
+            }
+        }
 
-                    if (variantThread.failed()) {
-                        // If there was an unhandled exception in the operation
-                        throw new VariantFailureException(variant, variantThread.getFailureMessage());
+        private void onVariantLate(VariantHandle<T> variantHandle) {
+            RuntimeException startFailure;
+            synchronized (this) {
+                if (finished || variantHandle != newestHandle) {
+                    return;
+                }
+                System.out.println(String.format("Variant '%s' is running late. Starting the next variant.",
+                        runningVariants.get(variantHandle).getName()));
+                startFailure = startNextVariant();
+            }
+            if (startFailure != null) {
+                failToStart(startFailure);
+            }
+        }
+
+        private void onVariantFinished(VariantHandle<T> variantHandle) {
+            Variant<T> variant;
+            synchronized (this) {
+                variant = runningVariants.remove(variantHandle);
+                if (finished || variant == null) {
+                    // Lost the race, and has been preempted
+                    return;
+                }
+                ++adjudicatingVariants;
+                if (variantHandle == newestHandle) {
+                    newestHandle = null;
+                    cancelHedge();
+                }
+            }
+
+            // Adjudicated outside the lock, since the acceptance test can take a while
+            T value;
+            try {
+                value = adjudicate(variant, variantHandle);
+            } catch (VariantFailureException e) {
+                // Report the local failure. A throwing listener mustn't stop the next variant from being started.
+                if (failureListener != null) {
+                    try {
+                        failureListener.onVariantFailure(variant, e.getMessage());
+                    } catch (RuntimeException listenerFailure) {
+                        System.err.println(String.format("The failure listener threw an exception: %s",
+                                listenerFailure));
                     }
+                }
 
-                    T result = variantThread.getResult();
-                    if (acceptanceTest == null || acceptanceTest.testResult(result)) {
-                        System.out.println(String.format("Variant '%s' successfully produced acceptable results.",
-                                variant.getName()));
-                        return result;
-                    } else {
-                        // Local exception
-                        throw new VariantFailureException(variant, "Acceptance Test failed.");
+                boolean allFailed;
+                RuntimeException startFailure = null;
+                synchronized (this) {
+                    --adjudicatingVariants;
+                    if (finished) {
+                        return;
+                    }
+                    if (newestHandle == null && pendingVariants.hasNext()) {
+                        startFailure = startNextVariant();
                     }
-                } catch (VariantFailureException e) {
-                    throw e;
-                } catch (Exception e) {
-                    // Something totally unhandled
-                    throw new VariantFailureException(variant, e);
+                    // Another variant might still produce an acceptable result
+                    allFailed = runningVariants.isEmpty() && adjudicatingVariants == 0;
                 }
-            } catch (VariantFailureException e) {
-                // Print the local failure report
-                System.err.println(e.getMessage());
+                if (startFailure != null) {
+                    failToStart(startFailure);
+                } else if (allFailed && finish()) {
+                    // Global exception
+                    result.completeExceptionally(new RecoveryBlocksSystemFailedException());
+                }
+                return;
+            }
+
+            if (finish()) {
+                System.out.println(String.format("Variant '%s' successfully produced acceptable results.",
+                        variant.getName()));
+                result.complete(value);
+            }
+        }
+
+        /**
+         * Marks the execution as finished, and preempts the variants that are still running.
+         * @return True, if this call finished the execution, else false.
+         */
+        private boolean finish() {
+            List<VariantHandle<T>> losers;
+            synchronized (this) {
+                if (finished) {
+                    return false;
+                }
+                finished = true;
+                cancelHedge();
+                losers = new ArrayList<>(runningVariants.keySet());
+                runningVariants.clear();
+            }
+
+            for (VariantHandle<T> variantHandle : losers) {
+                variantHandle.kill();
+            }
+            return true;
+        }
+
+        // Needs the lock
+        private void cancelHedge() {
+            if (hedge != null) {
+                hedge.cancel(false);
+                hedge = null;
             }
         }
+    }
+
+    /**
+     * Gets the time after which the next variant should be started speculatively, if {@code variant} is still
+     * running.
+     * @param variant The {@link Variant} that was just started.
+     * @return The hedge delay in nanoseconds, or -1 if the next variant should only be started once {@code variant}
+     * fails (not enough history, or it would be beyond the time limit anyway).
+     */
+    private long getHedgeDelayNanos(Variant<T> variant) {
+        long percentileNanos = latencyHistory.getPercentileNanos(variant, getInputSize(variant), hedgingPercentile);
+        if (percentileNanos >= TimeUnit.MILLISECONDS.toNanos(getTimeLimitMilliseconds(variant))) {
+            return -1;
+        }
+        return percentileNanos;
+    }
+
+    private long getTimeLimitMilliseconds(Variant<T> variant) {
+        return deadlinePolicy.getTimeLimitMilliseconds(variant, getInputSize(variant));
+    }
+
+    private static int getInputSize(Variant<?> variant) {
+        return variant instanceof SizedOperation ? ((SizedOperation<?>) variant).getInputSize() : 0;
+    }
+
+    /**
+     * Adjudicates the outcome of a finished {@link VariantHandle}.
+     * @param variant The {@link Variant} that was run by {@code variantHandle}.
+     * @param variantHandle The finished {@link VariantHandle}.
+     * @return The result of the {@code variant}, if it is acceptable.
+     * @throws VariantFailureException Thrown if the {@code variant} failed, timed out, or produced an unacceptable
+     *                                 result.
+     */
+    private T adjudicate(Variant<T> variant, VariantHandle<T> variantHandle) throws VariantFailureException {
+        VariantMetrics variantMetrics = metricsRegistry == null ? null : metricsRegistry.getMetrics(variant);
+        try {
+            if (variantHandle.isKilled()) {
+                if (variantMetrics != null) {
+                    variantMetrics.recordTimeout();
+                }
+                deadlinePolicy.recordTimeout(variant, getInputSize(variant));
+                throw new VariantFailureException(variant, "Timed out.");
+            }
+
+            if (variantHandle.failed()) {
+                // If there was an unhandled exception in the operation
+                if (variantMetrics != null) {
+                    variantMetrics.recordUncaughtException(variantHandle.getFailure());
+                }
+                throw new VariantFailureException(variant, variantHandle.getFailureMessage());
+            }
+
+            T result = variantHandle.getResult();
+            long acceptanceTestStartNanos = System.nanoTime();
+            boolean acceptable = acceptanceTest == null || acceptanceTest.testResult(result);
+            if (variantMetrics != null) {
+                variantMetrics.recordResult(variantHandle.getRunTimeNanos(),
+                        System.nanoTime() - acceptanceTestStartNanos, acceptable);
+            }
+            if (acceptable) {
+                int inputSize = getInputSize(variant);
+                deadlinePolicy.recordRunTime(variant, inputSize, variantHandle.getRunTimeNanos());
+                if (latencyHistory != null) {
+                    latencyHistory.record(variant, inputSize, variantHandle.getRunTimeNanos());
+                }
+                recordOutcome(variant, variantHandle, true);
+                return result;
+            } else {
+                // Local exception
+                throw new VariantFailureException(variant, "Acceptance Test failed.");
+            }
+        } catch (VariantFailureException e) {
+            recordOutcome(variant, variantHandle, false);
+            throw e;
+        } catch (Exception e) {
+            recordOutcome(variant, variantHandle, false);
+            if (variantMetrics != null) {
+                variantMetrics.recordUncaughtException(e);
+            }
+            // Something totally unhandled
+            throw new VariantFailureException(variant, e);
+        }
+    }
+
+    private void recordOutcome(Variant<T> variant, VariantHandle<T> variantHandle, boolean accepted) {
+        if (variantOrdering != null) {
+            variantOrdering.recordOutcome(variant, accepted, variantHandle.getRunTimeNanos());
+        }
+    }
+
+    /**
+     * The strategies for running the {@link Variant}s.
+     */
+    public enum ExecutionMode {
+        /**
+         * The variants are run one after another, starting with the primary one. A backup variant is only started
+         * once all the variants before it have failed.
+         */
+        SEQUENTIAL,
 
-        // Global exception
-        throw new RecoveryBlocksSystemFailedException();
+        /**
+         * All the variants are started together on separate workers. The first result that passes the
+         * {@link AcceptanceTest} is returned, and the remaining variants are preempted. The failed variants are
+         * reported in the order in which they finish.
+         */
+        CONCURRENT,
+
+        /**
+         * The variants are run one after another, but a backup variant is also started speculatively once the
+         * variant before it runs longer than a percentile of its past acceptable run times for that input size (see
+         * {@link Builder#setHedging(LatencyHistory, double)}). Whichever variant first produces an acceptable result
+         * wins, and the rest are preempted. Without enough history, this behaves like {@link #SEQUENTIAL}.
+         */
+        HEDGED
+    }
+
+    /**
+     * A listener for the local failures of the {@link Variant}s of an asynchronous execution.
+     */
+    public interface VariantFailureListener {
+        /**
+         * Called every time a {@link Variant} fails, times out, or produces an unacceptable result. Exceptions thrown
+         * from here are printed to stderr, and otherwise ignored.
+         * @param failedVariant The {@link Variant} that failed.
+         * @param failureReport The local failure report, including the variant's name and the cause.
+         */
+        void onVariantFailure(Variant<?> failedVariant, String failureReport);
+    }
+
+    /**
+     * A builder for configuring a {@link RecoveryBlocksExecutor}. Unless set otherwise, the variants are run
+     * sequentially on the {@link VariantWorkerPool#getDefault()} pool.
+     */
+    public static class Builder<T> {
+        private final List<Variant<T>> variants = new ArrayList<>();
+        private final DeadlinePolicy deadlinePolicy;
+        private final AcceptanceTest<T> acceptanceTest;
+        private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+        private VariantExecutionBackend executionBackend = VariantWorkerPool.getDefault();
+        private LatencyHistory latencyHistory = null;
+        private double hedgingPercentile = 0.95;
+        private AdaptiveVariantOrdering variantOrdering = null;
+        private MetricsRegistry metricsRegistry = null;
+
+        /**
+         * Creates a {@link Builder} object.
+         * @param variantTimeLimitMilliseconds The maximum time that a {@link Variant} be allowed to run, before
+         *                                     preempting it.
+         * @param acceptanceTest The {@link AcceptanceTest} for validating the result for correctness. Can be null,
+         *                       if no validation is needed.
+         * @param primaryVariant The primary {@link Variant} for producing the results.
+         * @throws IllegalArgumentException Thrown if {@code variantTimeLimitMilliseconds} is negative.
+         */
+        public Builder(long variantTimeLimitMilliseconds, AcceptanceTest<T> acceptanceTest,
+                       Variant<T> primaryVariant) throws IllegalArgumentException {
+            this(new FixedDeadlinePolicy(variantTimeLimitMilliseconds), acceptanceTest, primaryVariant);
+        }
+
+        /**
+         * Creates a {@link Builder} object.
+         * @param deadlinePolicy The {@link DeadlinePolicy} deciding how long a {@link Variant} is allowed to run,
+         *                       before preempting it, e.g. an {@link AdaptiveDeadlinePolicy}.
+         * @param acceptanceTest The {@link AcceptanceTest} for validating the result for correctness. Can be null,
+         *                       if no validation is needed.
+         * @param primaryVariant The primary {@link Variant} for producing the results.
+         * @throws IllegalArgumentException Thrown if {@code deadlinePolicy} is null.
+         */
+        public Builder(DeadlinePolicy deadlinePolicy, AcceptanceTest<T> acceptanceTest, Variant<T> primaryVariant)
+                throws IllegalArgumentException {
+            if (deadlinePolicy == null) {
+                throw new IllegalArgumentException("The deadline policy can't be null.");
+            }
+            this.deadlinePolicy = deadlinePolicy;
+            this.acceptanceTest = acceptanceTest;
+            variants.add(primaryVariant);
+        }
+
+        /**
+         * Adds backup {@link Variant}s, which will be used in order if the variants before them fail.
+         * @param backupVariants The backup {@link Variant}s.
+         * @return This builder.
+         */
+        // Safe, since the array itself is never stored or passed on
+        @SafeVarargs
+        public final Builder<T> addBackupVariants(Variant<T>... backupVariants) {
+            for (Variant<T> backupVariant : backupVariants) {
+                variants.add(backupVariant);
+            }
+            return this;
+        }
+
+        /**
+         * Sets the {@link ExecutionMode} to be used for running the variants.
+         * @param executionMode The {@link ExecutionMode}.
+         * @return This builder.
+         */
+        public Builder<T> setExecutionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Sets the {@link VariantExecutionBackend} on which the variants are run, e.g. a {@link VariantWorkerPool}.
+         * @param executionBackend The {@link VariantExecutionBackend}. Can be shared between executors.
+         * @return This builder.
+         */
+        public Builder<T> setExecutionBackend(VariantExecutionBackend executionBackend) {
+            this.executionBackend = executionBackend;
+            return this;
+        }
+
+        /**
+         * Sets the run time statistics used by the {@link ExecutionMode#HEDGED} mode. The acceptable runs of this
+         * executor are recorded in the {@code latencyHistory}, whatever the mode.
+         * @param latencyHistory The {@link LatencyHistory}. Should be shared by the executors running the same kind
+         *                       of job.
+         * @param percentile The run time percentile after which the next variant is started, between 0 (exclusive)
+         *                   and 1 (inclusive). E.g. 0.95 for p95.
+         * @return This builder.
+         * @throws IllegalArgumentException Thrown if {@code percentile} is not between 0 (exclusive) and 1.
+         */
+        public Builder<T> setHedging(LatencyHistory latencyHistory, double percentile)
+                throws IllegalArgumentException {
+            if (percentile <= 0.0 || percentile > 1.0) {
+                throw new IllegalArgumentException("The hedging percentile needs to be between 0 and 1.");
+            }
+            this.latencyHistory = latencyHistory;
+            this.hedgingPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Enables the adaptive ordering of the variants. On every execution, the variants are tried (or, in the
+         * {@link ExecutionMode#HEDGED} mode, started) in the order given by the {@code variantOrdering}, instead of
+         * primary first.
+         * @param variantOrdering The {@link AdaptiveVariantOrdering}. Should be shared by the executors running the
+         *                        same kind of job. Can be null, for keeping the configured order.
+         * @return This builder.
+         */
+        public Builder<T> setVariantOrdering(AdaptiveVariantOrdering variantOrdering) {
+            this.variantOrdering = variantOrdering;
+            return this;
+        }
+
+        /**
+         * Sets the registry in which the outcomes of the variants are recorded.
+         * @param metricsRegistry The {@link MetricsRegistry}. Can be shared between executors. Can be null, if no
+         *                        metrics are needed.
+         * @return This builder.
+         */
+        public Builder<T> setMetricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+
+        /**
+         * Creates the configured {@link RecoveryBlocksExecutor}.
+         * @return The new {@link RecoveryBlocksExecutor}.
+         * @throws IllegalArgumentException Thrown if the mode or the backend is null, or
+         *                                  the {@link ExecutionMode#HEDGED} mode has no {@link LatencyHistory}.
+         */
+        public RecoveryBlocksExecutor<T> build() throws IllegalArgumentException {
+            return new RecoveryBlocksExecutor<>(this);
+        }
     }
 
     /**
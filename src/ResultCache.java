@@ -0,0 +1,313 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed cache of the results of int array computations, like the ones done by a
+ * {@link RecoveryBlocksExecutor}. Lets identical inputs skip running any {@link Variant}.
+ *
+ * The inputs are identified by a 128 bit hash of their contents, so they don't need to be kept around. The results
+ * are kept in memory in a least recently used order, bounded by an estimate of their memory use. Optionally, the
+ * results are also written to a directory, which is used on memory misses and can be shared across processes.
+ *
+ * Only the results that pass the {@link AcceptanceTest} are cached. A disk entry also stores the hash of its input
+ * and of its result, which are verified when it's read, along with the acceptance test, so that a corrupted or
+ * misplaced file is treated as a miss. Thread safe.
+ */
+public class ResultCache {
+    // Rough size of an entry's bookkeeping, in addition to its elements
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+    private static final String DISK_ENTRY_SUFFIX = ".bin";
+    private static final int DISK_ENTRY_MAGIC = 0x52534c54;
+    // The magic number, the input's key and the length, before the elements
+    private static final int DISK_ENTRY_HEADER_BYTES = 4 + Key.BYTES + 4;
+
+    private final long maxMemoryBytes;
+    private final Path diskDirectory;
+    private final AcceptanceTest<int[]> acceptanceTest;
+
+    // Guarded by 'this'
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a {@link ResultCache} object.
+     * @param maxMemoryBytes The maximum estimated memory used by the in-memory entries. Results bigger than this
+     *                       are only cached on disk. 0 disables the memory tier.
+     * @param diskDirectory The directory for the on-disk tier. Created if it doesn't exist. Can be null, if only the
+     *                      memory tier is needed.
+     * @param acceptanceTest The {@link AcceptanceTest} that the results need to pass for being cached. Can be null, if
+     *                       all the results are acceptable.
+     * @throws IllegalArgumentException Thrown if {@code maxMemoryBytes} is negative.
+     * @throws IOException Thrown if the {@code diskDirectory} can't be created.
+     */
+    public ResultCache(long maxMemoryBytes, Path diskDirectory, AcceptanceTest<int[]> acceptanceTest)
+            throws IllegalArgumentException, IOException {
+        if (maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("The memory limit can't be negative.");
+        }
+        if (diskDirectory != null) {
+            Files.createDirectories(diskDirectory);
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.diskDirectory = diskDirectory;
+        this.acceptanceTest = acceptanceTest;
+    }
+
+    /**
+     * Returns the cached result for the {@code input}, or executes the {@code operation} and caches its result.
+     * The {@code input} is hashed before the {@code operation} runs, so the operation is free to modify it.
+     * @param input The input of the {@code operation}.
+     * @param operation The {@link Operation} that computes the result from the {@code input}, e.g. a
+     *                  {@link RecoveryBlocksExecutor}. Its exceptions are propagated, and nothing is cached then.
+     * @return A copy of the cached result, or the result of the {@code operation}.
+     */
+    public int[] execute(int[] input, Operation<int[]> operation) {
+        Key key = new Key(input);
+
+        int[] cached = getFromMemory(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.clone();
+        }
+
+        cached = getFromDisk(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            diskHits.incrementAndGet();
+            putInMemory(key, cached);
+            return cached.clone();
+        }
+
+        misses.incrementAndGet();
+        int[] result = operation.execute();
+        if (acceptanceTest == null || acceptanceTest.testResult(result)) {
+            // Copied, as the caller owns the result
+            int[] elements = result.clone();
+            putInMemory(key, elements);
+            putOnDisk(key, elements);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache, including the ones from the disk tier.
+     * @return The number of cache hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups answered from the disk tier.
+     * @return The number of disk tier hits.
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to execute the {@link Operation}.
+     * @return The number of cache misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the estimated memory used by the in-memory entries.
+     * @return The estimated memory use in bytes.
+     */
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    private synchronized int[] getFromMemory(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized void putInMemory(Key key, int[] elements) {
+        long entryBytes = sizeOf(elements);
+        if (entryBytes > maxMemoryBytes) {
+            return;
+        }
+
+        int[] previous = entries.put(key, elements);
+        memoryBytes += entryBytes - (previous == null ? 0 : sizeOf(previous));
+
+        Iterator<Map.Entry<Key, int[]>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes) {
+            memoryBytes -= sizeOf(leastRecentlyUsed.next().getValue());
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private int[] getFromDisk(Key key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+
+        Path file = diskDirectory.resolve(key.toString() + DISK_ENTRY_SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long fileBytes = Files.size(file);
+            if (in.readInt() != DISK_ENTRY_MAGIC || !key.equals(Key.read(in))) {
+                // Not an entry, or one of another input
+                return null;
+            }
+            int length = in.readInt();
+            if (length < 0 || length > (fileBytes - DISK_ENTRY_HEADER_BYTES - Key.BYTES) / 4) {
+                // A corrupted length, which can't be trusted for the allocation
+                return null;
+            }
+            int[] elements = new int[length];
+            for (int i = 0; i < elements.length; ++i) {
+                elements[i] = in.readInt();
+            }
+            if (!new Key(elements).equals(Key.read(in)) || in.read() != -1 ||
+                    (acceptanceTest != null && !acceptanceTest.testResult(elements))) {
+                return null;
+            }
+            return elements;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (EOFException e) {
+            // Truncated entry
+            return null;
+        } catch (IOException e) {
+            System.err.println(String.format("Couldn't read the cached result '%s': %s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    private void putOnDisk(Key key, int[] elements) {
+        if (diskDirectory == null) {
+            return;
+        }
+
+        Path file = diskDirectory.resolve(key.toString() + DISK_ENTRY_SUFFIX);
+        Path temporaryFile = null;
+        try {
+            // Written to a temporary file first, so that concurrent readers never see a partial entry
+            temporaryFile = Files.createTempFile(diskDirectory, key.toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(DISK_ENTRY_MAGIC);
+                key.write(out);
+                out.writeInt(elements.length);
+                for (int element : elements) {
+                    out.writeInt(element);
+                }
+                new Key(elements).write(out);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println(String.format("Couldn't write the cached result '%s': %s", file, e.getMessage()));
+            if (temporaryFile != null) {
+                try {
+                    Files.deleteIfExists(temporaryFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(int[] elements) {
+        return ENTRY_OVERHEAD_BYTES + 4L * elements.length;
+    }
+
+    /**
+     * The content address of an input, also used as the checksum of a disk entry's result. Two independent 64 bit
+     * hashes make collisions practically impossible, without having to keep the input for comparisons.
+     */
+    private static final class Key {
+        // The size of a written key
+        public static final int BYTES = 8 + 8 + 4;
+
+        private final long high;
+        private final long low;
+        private final int length;
+
+        public Key(int[] elements) {
+            long h1 = 0xcbf29ce484222325L;
+            long h2 = 0x9e3779b97f4a7c15L;
+            for (int element : elements) {
+                h1 = (h1 ^ (element & 0xffffffffL)) * 0x100000001b3L;
+                h2 = Long.rotateLeft(h2 + element * 0xc2b2ae3d27d4eb4fL, 31) * 0x9e3779b97f4a7c15L;
+            }
+            high = mix(h1 ^ elements.length);
+            low = mix(h2 + elements.length);
+            length = elements.length;
+        }
+
+        private Key(long high, long low, int length) {
+            this.high = high;
+            this.low = low;
+            this.length = length;
+        }
+
+        public static Key read(DataInputStream in) throws IOException {
+            long high = in.readLong();
+            long low = in.readLong();
+            return new Key(high, low, in.readInt());
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeLong(high);
+            out.writeLong(low);
+            out.writeInt(length);
+        }
+
+        private static long mix(long h) {
+            h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+            h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return high == other.high && low == other.low && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) low;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+}
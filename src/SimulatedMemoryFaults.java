@@ -0,0 +1,206 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates random memory access failures, as drawn from a {@link FailureModel}; by default the
+ * {@link LinearHazardFailureModel}, in which the n-th access fails with a probability of
+ * {@code min(n * failureProbability, 0.5)}. Used by the {@link RandomlyFailingList}, and by the variants working on
+ * primitive arrays.
+ *
+ * Meant to be called inline on every access, so nothing is drawn per access: the index of the next failing access is
+ * drawn up front from the model, and every access only counts and compares against it, whatever the model. After a
+ * failure, the next one is drawn in the same way. Doesn't allocate, and uses a xorshift generator instead of a
+ * {@link java.util.Random}. Not thread safe; every sort should have its own instance.
+ *
+ * Seeded faults draw the same failure points on every run, and recorded ones can be replayed from their failure
+ * points alone, even by a build whose sampling has changed. See {@link FaultSchedule}.
+ */
+public final class SimulatedMemoryFaults implements MemoryFaults {
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+    // Keeps the seeds of unseeded faults created in the same nanosecond apart
+    private static final AtomicLong SEED_UNIQUIFIER = new AtomicLong();
+
+    // Null, if replaying
+    private final FailureModel model;
+    private long accessCount = 0;
+    private long failureAccess;
+    private long randomState;
+    // The failure points to replay instead of sampling, if any
+    private final long[] replayedFailureAccesses;
+    private int replayedCount = 0;
+    // Every failure point drawn so far, if recording
+    private long[] recordedFailureAccesses;
+    private int recordedCount = 0;
+
+    /**
+     * Creates a {@link SimulatedMemoryFaults} object with a random seed.
+     * @param failureProbability The failure probability of an access, which grows with the number of accesses.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public SimulatedMemoryFaults(double failureProbability) throws IllegalArgumentException {
+        this(new LinearHazardFailureModel(failureProbability), randomSeed(), false);
+    }
+
+    /**
+     * Creates a {@link SimulatedMemoryFaults} object with a random seed.
+     * @param model The {@link FailureModel} of the failures.
+     * @throws IllegalArgumentException Thrown if the model is null.
+     */
+    public SimulatedMemoryFaults(FailureModel model) throws IllegalArgumentException {
+        this(model, randomSeed(), false);
+    }
+
+    /**
+     * Creates a {@link SimulatedMemoryFaults} object, that fails on the same accesses for the same seed.
+     * @param failureProbability The failure probability of an access, which grows with the number of accesses.
+     * @param seed The seed of the failure points.
+     * @param record True, for keeping the failure points, for {@link #getRecordedFailureAccesses()}.
+     * @throws IllegalArgumentException Thrown if the probability is not between 0 and 1.
+     */
+    public SimulatedMemoryFaults(double failureProbability, long seed, boolean record)
+            throws IllegalArgumentException {
+        this(new LinearHazardFailureModel(failureProbability), seed, record);
+    }
+
+    /**
+     * Creates a {@link SimulatedMemoryFaults} object, that fails on the same accesses for the same model and seed.
+     * @param model The {@link FailureModel} of the failures.
+     * @param seed The seed of the failure points.
+     * @param record True, for keeping the failure points, for {@link #getRecordedFailureAccesses()}.
+     * @throws IllegalArgumentException Thrown if the model is null.
+     */
+    public SimulatedMemoryFaults(FailureModel model, long seed, boolean record) throws IllegalArgumentException {
+        if (model == null) {
+            throw new IllegalArgumentException("The failure model can't be null.");
+        }
+        this.model = model;
+        this.randomState = mix(seed);
+        this.replayedFailureAccesses = null;
+        this.recordedFailureAccesses = record ? new long[4] : null;
+        this.failureAccess = nextFailureAccess();
+    }
+
+    /**
+     * Creates a {@link SimulatedMemoryFaults} object that replays recorded failure points, and never fails after
+     * the last one.
+     * @param failureAccesses The indices of the failing accesses, in increasing order, as returned by
+     *                        {@link #getRecordedFailureAccesses()}. Not copied.
+     * @throws IllegalArgumentException Thrown if the indices are null, or not positive and increasing.
+     */
+    public SimulatedMemoryFaults(long[] failureAccesses) throws IllegalArgumentException {
+        if (failureAccesses == null) {
+            throw new IllegalArgumentException("The failure accesses can't be null.");
+        }
+        for (int i = 0; i < failureAccesses.length; ++i) {
+            if (failureAccesses[i] <= (i == 0 ? 0 : failureAccesses[i - 1])) {
+                throw new IllegalArgumentException("The failure accesses need to be positive and increasing.");
+            }
+        }
+        this.model = null;
+        this.randomState = 1;
+        this.replayedFailureAccesses = failureAccesses;
+        this.recordedFailureAccesses = null;
+        this.failureAccess = nextFailureAccess();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void access() throws MemoryAccessFailureException {
+        if (++accessCount == failureAccess) {
+            failureAccess = nextFailureAccess();
+            throw new MemoryAccessFailureException("Random simulated failure event.");
+        }
+    }
+
+    /**
+     * Gets the pending failure point, e.g. for a native sort, which counts its accesses itself.
+     * @return The index of the next access that fails, counting the accesses from 1, or {@link Long#MAX_VALUE} if no
+     * access will ever fail.
+     */
+    public long getFailureAccess() {
+        return failureAccess;
+    }
+
+    /**
+     * Skips ahead to the pending failure point, as if all the accesses up to and including it had been made, e.g.
+     * by the threads of a {@link ConcurrentSimulatedMemoryFaults}.
+     * @return The failure point after that, as {@link #getFailureAccess()} now returns it.
+     */
+    public long skipToNextFailure() {
+        if (failureAccess != Long.MAX_VALUE) {
+            accessCount = failureAccess;
+            failureAccess = nextFailureAccess();
+        }
+        return failureAccess;
+    }
+
+    /**
+     * Gets the failure points drawn so far, e.g. for saving a {@link FaultSchedule}.
+     * @return The failure points in increasing order, including the pending one. Empty if not recording.
+     */
+    public long[] getRecordedFailureAccesses() {
+        return recordedFailureAccesses == null ? new long[0] : Arrays.copyOf(recordedFailureAccesses, recordedCount);
+    }
+
+    private long nextFailureAccess() {
+        if (replayedFailureAccesses != null) {
+            return replayedCount < replayedFailureAccesses.length ? replayedFailureAccesses[replayedCount++] :
+                    Long.MAX_VALUE;
+        }
+        long next = sampleFailureAccess();
+        if (recordedFailureAccesses != null && next != Long.MAX_VALUE) {
+            if (recordedCount == recordedFailureAccesses.length) {
+                recordedFailureAccesses = Arrays.copyOf(recordedFailureAccesses, recordedCount * 2);
+            }
+            recordedFailureAccesses[recordedCount++] = next;
+        }
+        return next;
+    }
+
+    private long sampleFailureAccess() {
+        long next = model.nextFailureAccess(accessCount, nextDouble());
+        // Guards the counting against a model that returns a point already passed
+        return Math.max(accessCount + 1, next);
+    }
+
+    private static long randomSeed() {
+        return System.nanoTime() ^ SEED_UNIQUIFIER.addAndGet(0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Spreads a seed over all the bits of the generator's state, so that similar seeds draw unrelated failure points.
+     */
+    private static long mix(long seed) {
+        // splitmix64. Never 0, as xorshift would be stuck there
+        long z = seed + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return (z ^ (z >>> 31)) | 1;
+    }
+
+    /**
+     * Draws a uniform random number in (0, 1].
+     */
+    private double nextDouble() {
+        // xorshift64*
+        randomState ^= randomState >>> 12;
+        randomState ^= randomState << 25;
+        randomState ^= randomState >>> 27;
+        return (((randomState * 0x2545f4914f6cdd1dL) >>> 11) + 1) * DOUBLE_UNIT;
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * An extension interface of the {@link Operation} for operations whose run time depends on the size of their input.
+ * Lets the {@link RecoveryBlocksExecutor} keep separate run time statistics for different input sizes.
+ */
+public interface SizedOperation<T> extends Operation<T> {
+    /**
+     * Returns the size of the input that this operation works on, e.g. the number of elements to be sorted. Can be
+     * called at any time, even while the operation runs, so it shouldn't touch the input itself.
+     * @return The input size.
+     */
+    int getInputSize();
+}
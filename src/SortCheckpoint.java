@@ -0,0 +1,99 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * The latest partial progress of a {@link Variant} sorting an int array, shared with the variants that run after it
+ * in the same recovery block. A sorting variant publishes the state of its array whenever a suffix of it holds the
+ * largest elements in their final order, e.g. the heap sort after every few extractions. A later variant can then
+ * restore that state and only sort the rest, instead of starting over on the raw input.
+ *
+ * A checkpoint is verified before it's restored: its suffix needs to be sorted, not smaller than the rest of the
+ * elements, and the whole array needs to be a permutation of the input (compared through an order independent
+ * hash). Thread safe.
+ */
+public class SortCheckpoint {
+    // Guarded by 'this'
+    private int[] snapshot = null;
+    private int sortedFrom = 0;
+
+    /**
+     * Publishes the state of a sort. Copies the {@code data}, so the publisher can carry on right away.
+     * @param data The array being sorted. Needs to be in a consistent state, i.e. not in the middle of a swap.
+     * @param sortedFrom The index from which {@code data} holds its largest elements in their final order.
+     * @throws IllegalArgumentException Thrown if {@code sortedFrom} is not within {@code data}.
+     */
+    public synchronized void publish(int[] data, int sortedFrom) throws IllegalArgumentException {
+        if (sortedFrom < 0 || sortedFrom > data.length) {
+            throw new IllegalArgumentException("The sorted suffix needs to be within the data.");
+        }
+        if (snapshot == null || snapshot.length != data.length) {
+            snapshot = new int[data.length];
+        }
+        System.arraycopy(data, 0, snapshot, 0, data.length);
+        this.sortedFrom = sortedFrom;
+    }
+
+    /**
+     * Restores the latest checkpoint of a sort of the {@code input}, if there's one that can be verified.
+     * @param input The unsorted input.
+     * @param destination The array to restore the checkpoint into. Needs to be as long as the {@code input}. Its
+     *                    contents are undefined if no checkpoint could be restored.
+     * @return The index from which the restored array is sorted, or {@code input.length} if no checkpoint could be
+     * restored.
+     * @throws IllegalArgumentException Thrown if the lengths of the arrays differ.
+     */
+    public int restore(int[] input, int[] destination) throws IllegalArgumentException {
+        if (input.length != destination.length) {
+            throw new IllegalArgumentException("The destination needs to be as long as the input.");
+        }
+        int restoredFrom;
+        synchronized (this) {
+            if (snapshot == null || snapshot.length != input.length || sortedFrom == input.length) {
+                return input.length;
+            }
+            System.arraycopy(snapshot, 0, destination, 0, snapshot.length);
+            restoredFrom = sortedFrom;
+        }
+        return isValid(input, destination, restoredFrom) ? restoredFrom : input.length;
+    }
+
+    private static boolean isValid(int[] input, int[] restored, int sortedFrom) {
+        for (int i = sortedFrom + 1; i < restored.length; ++i) {
+            if (restored[i] < restored[i - 1]) {
+                return false;
+            }
+        }
+        if (sortedFrom > 0 && sortedFrom < restored.length) {
+            int minSorted = restored[sortedFrom];
+            for (int i = 0; i < sortedFrom; ++i) {
+                if (restored[i] > minSorted) {
+                    return false;
+                }
+            }
+        }
+        return hashOf(input) == hashOf(restored);
+    }
+
+    /**
+     * An order independent hash of the elements, so that a permutation can be verified in linear time.
+     */
+    private static long hashOf(int[] elements) {
+        long hash = 0;
+        for (int element : elements) {
+            long h = (element & 0xffffffffL) * 0x9e3779b97f4a7c15L;
+            h = (h ^ (h >>> 32)) * 0xff51afd7ed558ccdL;
+            hash += h ^ (h >>> 29);
+        }
+        return hash;
+    }
+}
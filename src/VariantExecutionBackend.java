@@ -0,0 +1,45 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.function.Consumer;
+
+/**
+ * An interface for the threading backends on which the {@link RecoveryBlocksExecutor} runs its {@link Variant}s.
+ */
+public interface VariantExecutionBackend {
+
+    /**
+     * Submits an {@link Operation} for asynchronous execution.
+     * @param operation The {@link Operation} to be executed.
+     * @param timeLimitMilliseconds The maximum time that the {@code operation} is allowed to run, before
+     *                              preempting it.
+     * @param completionListener Called with the returned handle once the {@link Operation} has finished, failed, or
+     *                           been killed. Called on the thread that finished or killed it, so it shouldn't block.
+     *                           Can be null, if no completion notification is needed.
+     * @param <T> The result type of the {@code operation}.
+     * @return The {@link VariantHandle} for tracking the {@code operation}.
+     */
+    <T> VariantHandle<T> submit(Operation<T> operation, long timeLimitMilliseconds,
+                                Consumer<? super VariantHandle<T>> completionListener);
+
+    /**
+     * Gets the {@link Watchdog} that enforces the time limits of this backend's operations.
+     * @return The {@link Watchdog}.
+     */
+    Watchdog getWatchdog();
+
+    /**
+     * Stops accepting new operations, and releases the backend's threads once they are done.
+     */
+    void shutdown();
+}
@@ -0,0 +1,219 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * A future-like handle to an {@link Operation} submitted to a {@link VariantExecutionBackend}. Runs the operation in an
+ * exception safe way (catches all unhandled exceptions), and reports its result or failure state.
+ *
+ * The handle is armed with a {@link Watchdog} deadline once the operation starts running, so the time spent waiting
+ * for a free worker doesn't count towards the time limit.
+ *
+ * Killing a handle cancels the {@link CancellationToken} of a {@link CancellableOperation}, and interrupts its
+ * thread. A running operation is only reported as killed once it has actually returned, e.g. at its next
+ * cancellation check, so its worker is busy until then, and no other variant starts on its input while it still
+ * touches it. Operations that aren't cancellable hold up the handle until they complete, and their results are
+ * discarded, so the variants should implement {@link CancellableOperation}.
+ */
+public class VariantHandle<T> implements Runnable {
+    private enum State {
+        PENDING, RUNNING, SUCCEEDED, FAILED, KILLED
+    }
+
+    private final Operation<T> operation;
+    private final Watchdog watchdog;
+    private final long timeLimitMilliseconds;
+    private final CancellationToken cancellationToken = new CancellationToken();
+    private final Consumer<? super VariantHandle<T>> completionListener;
+
+    // All guarded by 'this'
+    private State state = State.PENDING;
+    // Set once a running operation has been asked to stop. It's reported as killed when it returns.
+    private boolean killRequested = false;
+    private Thread runner = null;
+    private T result = null;
+    private Throwable failure = null;
+    private long startNanos = 0;
+    private long endNanos = 0;
+
+    /**
+     * Creates a {@link VariantHandle} object. Only the {@link VariantExecutionBackend}s are expected to create these.
+     * @param operation The {@link Operation} to be executed.
+     * @param watchdog The {@link Watchdog} to be used for enforcing the time limit.
+     * @param timeLimitMilliseconds The maximum time that the {@code operation} is allowed to run.
+     * @param completionListener Called with this handle once the {@link Operation} has finished, failed, or been
+     *                           killed. Can be null, if no completion notification is needed.
+     */
+    VariantHandle(Operation<T> operation, Watchdog watchdog, long timeLimitMilliseconds,
+                  Consumer<? super VariantHandle<T>> completionListener) {
+        this.operation = operation;
+        this.watchdog = watchdog;
+        this.timeLimitMilliseconds = timeLimitMilliseconds;
+        this.completionListener = completionListener;
+    }
+
+    /**
+     * Executes the {@link Operation} on the calling worker thread. Does nothing if the handle has already been
+     * killed.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return;
+            }
+            state = State.RUNNING;
+            runner = Thread.currentThread();
+            startNanos = System.nanoTime();
+        }
+
+        ScheduledFuture<?> deadline = watchdog.watch(this, timeLimitMilliseconds);
+
+        try {
+            try {
+                T operationResult = operation instanceof CancellableOperation ?
+                        ((CancellableOperation<T>) operation).execute(cancellationToken) :
+                        operation.execute();
+                finish(State.SUCCEEDED, operationResult, null);
+            } finally {
+                deadline.cancel(false);
+            }
+        } catch (RuntimeException | Error e) {
+            // Reported as a kill instead, if the handle has been killed
+            finish(State.FAILED, null, e);
+        } finally {
+            // Clear a possible interrupt from kill(), so that it doesn't leak into the worker's next operation. No
+            // new interrupt can arrive once the handle has left the RUNNING state.
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Preempts the {@link Operation}, if it hasn't finished yet. Doesn't block. An operation that hasn't started is
+     * reported as killed right away, and a running one once it returns.
+     */
+    public void kill() {
+        synchronized (this) {
+            if (state == State.RUNNING) {
+                if (killRequested) {
+                    return;
+                }
+                killRequested = true;
+                cancellationToken.cancel();
+                // Interrupted while holding the lock, so that the worker can't have moved on to another operation
+                runner.interrupt();
+                return;
+            }
+            if (state != State.PENDING) {
+                return;
+            }
+            cancellationToken.cancel();
+            state = State.KILLED;
+            notifyAll();
+        }
+        notifyCompletion();
+    }
+
+    /**
+     * Blocks until the {@link Operation} has finished, failed, or been killed.
+     * @throws InterruptedException Thrown if the waiting thread is interrupted.
+     */
+    public synchronized void await() throws InterruptedException {
+        while (!isDone()) {
+            wait();
+        }
+    }
+
+    /**
+     * True, if the {@link Operation} has finished, failed, or been killed.
+     * @return True, if the {@link Operation} has finished, failed, or been killed.
+     */
+    public synchronized boolean isDone() {
+        return state != State.PENDING && state != State.RUNNING;
+    }
+
+    /**
+     * Gets the results produced by the {@link Operation}.
+     * @return The results produced by the {@link Operation}. Null, if the {@link Operation} hasn't finished processing
+     * yet, or if it threw an unhandled exception, or was killed.
+     */
+    public synchronized T getResult() {
+        return result;
+    }
+
+    /**
+     * True if the {@link Operation} was preempted using {@link #kill()}.
+     * @return If the {@link Operation} has been externally terminated or not.
+     */
+    public synchronized boolean isKilled() {
+        return state == State.KILLED;
+    }
+
+    /**
+     * True, if the {@link Operation} threw an unhandled exception, else false.
+     * @return True, if the {@link Operation} threw an unhandled exception, else false.
+     */
+    public synchronized boolean failed() {
+        return state == State.FAILED;
+    }
+
+    /**
+     * Returns the exception message if an unhandled exception was thrown by the {@link Operation}, else null.
+     * @return The exception message if an unhandled exception was thrown by the {@link Operation}, else null.
+     */
+    public synchronized String getFailureMessage() {
+        return failure == null ? null : failure.getMessage();
+    }
+
+    /**
+     * Returns the unhandled exception thrown by the {@link Operation}, if any.
+     * @return The unhandled exception thrown by the {@link Operation}, else null.
+     */
+    public synchronized Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Gets the time for which the {@link Operation} ran, until it finished, failed or was killed.
+     * @return The run time in nanoseconds. 0, if the {@link Operation} never started, or hasn't finished yet.
+     */
+    public synchronized long getRunTimeNanos() {
+        return endNanos - startNanos;
+    }
+
+    private void finish(State finalState, T operationResult, Throwable operationFailure) {
+        long finishNanos = System.nanoTime();
+        synchronized (this) {
+            endNanos = finishNanos;
+            runner = null;
+            if (killRequested) {
+                // Lost the race against the watchdog. Whatever the operation returned is discarded.
+                state = State.KILLED;
+            } else {
+                state = finalState;
+                result = operationResult;
+                failure = operationFailure;
+            }
+            notifyAll();
+        }
+        notifyCompletion();
+    }
+
+    private void notifyCompletion() {
+        if (completionListener != null) {
+            completionListener.accept(this);
+        }
+    }
+}
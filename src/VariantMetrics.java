@@ -0,0 +1,208 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters and histograms of a single {@link Variant}, as recorded by a {@link RecoveryBlocksExecutor}. Created
+ * through a {@link MetricsRegistry}.
+ *
+ * The latency histogram covers the runs that produced a result, whether or not it was acceptable. The timed out
+ * runs and the runs that threw are only counted. The preempted losers of a race aren't recorded at all.
+ * Thread safe.
+ */
+public class VariantMetrics implements VariantMetricsMBean {
+    private static final double NANOS_PER_MILLISECOND = 1e6;
+
+    private final String variantName;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram acceptanceTestDuration = new LatencyHistogram();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder acceptanceTestFailures = new LongAdder();
+    private final LongAdder uncaughtExceptions = new LongAdder();
+    private final LongAdder memoryAccessFailures = new LongAdder();
+
+    VariantMetrics(String variantName) {
+        this.variantName = variantName;
+    }
+
+    /**
+     * Records a run that produced a result, and the acceptance test of that result.
+     * @param runTimeNanos The run time of the {@link Variant}.
+     * @param acceptanceTestNanos The time taken by the {@link AcceptanceTest}.
+     * @param acceptable Whether or not the result passed the {@link AcceptanceTest}.
+     */
+    public void recordResult(long runTimeNanos, long acceptanceTestNanos, boolean acceptable) {
+        latency.record(runTimeNanos);
+        acceptanceTestDuration.record(acceptanceTestNanos);
+        if (acceptable) {
+            accepted.increment();
+        } else {
+            acceptanceTestFailures.increment();
+        }
+    }
+
+    /**
+     * Records a run that was preempted for exceeding its time limit.
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * Records a run that threw an unhandled exception.
+     * @param failure The exception. {@link MemoryAccessFailureException}s are also counted separately.
+     */
+    public void recordUncaughtException(Throwable failure) {
+        uncaughtExceptions.increment();
+        if (failure instanceof MemoryAccessFailureException) {
+            memoryAccessFailures.increment();
+        }
+    }
+
+    /**
+     * Gets the histogram of the run times that produced a result.
+     * @return The run time {@link LatencyHistogram}.
+     */
+    public LatencyHistogram getLatencyHistogram() {
+        return latency;
+    }
+
+    /**
+     * Gets the histogram of the acceptance test durations.
+     * @return The acceptance test {@link LatencyHistogram}.
+     */
+    public LatencyHistogram getAcceptanceTestHistogram() {
+        return acceptanceTestDuration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVariantName() {
+        return variantName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getExecutionCount() {
+        return latency.getCount() + timeouts.sum() + uncaughtExceptions.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getAcceptanceTestFailureCount() {
+        return acceptanceTestFailures.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getUncaughtExceptionCount() {
+        return uncaughtExceptions.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getMemoryAccessFailureCount() {
+        return memoryAccessFailures.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMeanLatencyMilliseconds() {
+        return latency.getMeanNanos() / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getP50LatencyMilliseconds() {
+        return latency.getPercentileNanos(0.5) / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getP99LatencyMilliseconds() {
+        return latency.getPercentileNanos(0.99) / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMaxLatencyMilliseconds() {
+        return latency.getMaxNanos() / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMeanAcceptanceTestMilliseconds() {
+        return acceptanceTestDuration.getMeanNanos() / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getMaxAcceptanceTestMilliseconds() {
+        return acceptanceTestDuration.getMaxNanos() / NANOS_PER_MILLISECOND;
+    }
+
+    /**
+     * Formats the metrics as a single line of text.
+     * @return The formatted metrics.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: runs=%d accepted=%d timeouts=%d rejected=%d exceptions=%d memory_failures=%d " +
+                        "latency_ms(mean=%.3f p50=%.3f p99=%.3f max=%.3f) acceptance_test_ms(mean=%.3f max=%.3f)",
+                variantName, getExecutionCount(), getAcceptedCount(), getTimeoutCount(),
+                getAcceptanceTestFailureCount(), getUncaughtExceptionCount(), getMemoryAccessFailureCount(),
+                getMeanLatencyMilliseconds(), getP50LatencyMilliseconds(), getP99LatencyMilliseconds(),
+                getMaxLatencyMilliseconds(), getMeanAcceptanceTestMilliseconds(),
+                getMaxAcceptanceTestMilliseconds());
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * The JMX management interface of the {@link VariantMetrics}. The durations are in milliseconds.
+ */
+public interface VariantMetricsMBean {
+    String getVariantName();
+
+    long getExecutionCount();
+
+    long getAcceptedCount();
+
+    long getTimeoutCount();
+
+    long getAcceptanceTestFailureCount();
+
+    long getUncaughtExceptionCount();
+
+    long getMemoryAccessFailureCount();
+
+    double getMeanLatencyMilliseconds();
+
+    double getP50LatencyMilliseconds();
+
+    double getP99LatencyMilliseconds();
+
+    double getMaxLatencyMilliseconds();
+
+    double getMeanAcceptanceTestMilliseconds();
+
+    double getMaxAcceptanceTestMilliseconds();
+}
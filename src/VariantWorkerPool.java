@@ -0,0 +1,111 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A {@link VariantExecutionBackend} with a reusable pool of platform worker threads for running {@link Variant}s, and
+ * a shared {@link Watchdog} for enforcing their time limits. Submitting a variant doesn't create any threads.
+ */
+public class VariantWorkerPool implements VariantExecutionBackend {
+    private static VariantWorkerPool defaultPool = null;
+
+    private final ThreadPoolExecutor workers;
+    private final Watchdog watchdog;
+    private final boolean ownsWatchdog;
+
+    /**
+     * Creates a {@link VariantWorkerPool} object.
+     * @param numberOfWorkers The number of worker threads. This is the maximum number of variants that can run at
+     *                        the same time; the rest wait for a free worker.
+     * @param watchdog The {@link Watchdog} to be used for enforcing the time limits. Can be shared between pools.
+     * @throws IllegalArgumentException Thrown if {@code numberOfWorkers} is not positive, or {@code watchdog} is
+     *                                  null.
+     */
+    public VariantWorkerPool(int numberOfWorkers, Watchdog watchdog) throws IllegalArgumentException {
+        this(numberOfWorkers, watchdog, false);
+    }
+
+    /**
+     * Creates a {@link VariantWorkerPool} object with its own {@link Watchdog}.
+     * @param numberOfWorkers The number of worker threads.
+     * @param numberOfWatchdogThreads The number of {@link Watchdog} scheduler threads.
+     * @throws IllegalArgumentException Thrown if either of the sizes is not positive.
+     */
+    public VariantWorkerPool(int numberOfWorkers, int numberOfWatchdogThreads) throws IllegalArgumentException {
+        this(numberOfWorkers, new Watchdog(numberOfWatchdogThreads), true);
+    }
+
+    private VariantWorkerPool(int numberOfWorkers, Watchdog watchdog, boolean ownsWatchdog)
+            throws IllegalArgumentException {
+        if (numberOfWorkers <= 0) {
+            throw new IllegalArgumentException("The worker pool needs at least 1 worker.");
+        }
+        if (watchdog == null) {
+            throw new IllegalArgumentException("The watchdog can't be null.");
+        }
+        this.workers = new ThreadPoolExecutor(numberOfWorkers, numberOfWorkers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedDaemonThreadFactory("variant-worker"));
+        this.watchdog = watchdog;
+        this.ownsWatchdog = ownsWatchdog;
+    }
+
+    /**
+     * Returns the process-wide pool used by the {@link RecoveryBlocksExecutor}s that weren't given one. It has a
+     * worker per CPU core (at least 2, so that a primary and a backup can always run side by side), and a single
+     * watchdog thread.
+     * @return The default {@link VariantWorkerPool}.
+     */
+    public static synchronized VariantWorkerPool getDefault() {
+        if (defaultPool == null) {
+            int numberOfWorkers = Math.max(2, Runtime.getRuntime().availableProcessors());
+            defaultPool = new VariantWorkerPool(numberOfWorkers, 1);
+        }
+        return defaultPool;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> VariantHandle<T> submit(Operation<T> operation, long timeLimitMilliseconds,
+                                       Consumer<? super VariantHandle<T>> completionListener) {
+        VariantHandle<T> handle = new VariantHandle<>(operation, watchdog, timeLimitMilliseconds,
+                completionListener);
+        workers.execute(handle);
+        return handle;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Watchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The {@link Watchdog} is also shut down, unless it was passed in by the caller.
+     */
+    @Override
+    public void shutdown() {
+        workers.shutdown();
+        if (ownsWatchdog) {
+            watchdog.shutdown();
+        }
+    }
+}
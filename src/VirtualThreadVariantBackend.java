@@ -0,0 +1,129 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A {@link VariantExecutionBackend} that runs every {@link Variant} on its own virtual thread, so that thousands of
+ * recovery blocks can be in flight without a platform thread each. Requires JDK 21 or newer at runtime.
+ *
+ * Variants that exceed their time limit are cancelled cooperatively (see {@link CancellableOperation}), since
+ * {@link Thread#stop()} isn't available on virtual threads.
+ */
+public class VirtualThreadVariantBackend implements VariantExecutionBackend {
+    private static VirtualThreadVariantBackend defaultBackend = null;
+
+    private final ExecutorService executor;
+    private final Watchdog watchdog;
+    private final boolean ownsWatchdog;
+
+    /**
+     * Creates a {@link VirtualThreadVariantBackend} object.
+     * @param watchdog The {@link Watchdog} to be used for enforcing the time limits. Can be shared between backends.
+     * @throws IllegalArgumentException Thrown if {@code watchdog} is null.
+     * @throws UnsupportedOperationException Thrown if the JDK doesn't support virtual threads.
+     */
+    public VirtualThreadVariantBackend(Watchdog watchdog)
+            throws IllegalArgumentException, UnsupportedOperationException {
+        this(watchdog, false);
+    }
+
+    /**
+     * Creates a {@link VirtualThreadVariantBackend} object with its own single threaded {@link Watchdog}.
+     * @throws UnsupportedOperationException Thrown if the JDK doesn't support virtual threads.
+     */
+    public VirtualThreadVariantBackend() throws UnsupportedOperationException {
+        this(new Watchdog(1), true);
+    }
+
+    private VirtualThreadVariantBackend(Watchdog watchdog, boolean ownsWatchdog)
+            throws IllegalArgumentException, UnsupportedOperationException {
+        if (watchdog == null) {
+            throw new IllegalArgumentException("The watchdog can't be null.");
+        }
+        this.executor = newVirtualThreadPerTaskExecutor();
+        this.watchdog = watchdog;
+        this.ownsWatchdog = ownsWatchdog;
+    }
+
+    /**
+     * Returns the process-wide backend, the counterpart of {@link VariantWorkerPool#getDefault()}. Created on first
+     * use, with its own single threaded {@link Watchdog}, and never shut down, so it can be shared by any number of
+     * {@link RecoveryBlocksExecutor}s.
+     * @return The default {@link VirtualThreadVariantBackend}.
+     * @throws UnsupportedOperationException Thrown if the JDK doesn't support virtual threads.
+     */
+    public static synchronized VirtualThreadVariantBackend getDefault() throws UnsupportedOperationException {
+        if (defaultBackend == null) {
+            defaultBackend = new VirtualThreadVariantBackend();
+        }
+        return defaultBackend;
+    }
+
+    /**
+     * Checks if virtual threads are available on this JDK.
+     * @return True, if a {@link VirtualThreadVariantBackend} can be created, else false.
+     */
+    public static boolean isSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> VariantHandle<T> submit(Operation<T> operation, long timeLimitMilliseconds,
+                                       Consumer<? super VariantHandle<T>> completionListener) {
+        VariantHandle<T> handle = new VariantHandle<>(operation, watchdog, timeLimitMilliseconds,
+                completionListener);
+        executor.execute(handle);
+        return handle;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Watchdog getWatchdog() {
+        return watchdog;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The {@link Watchdog} is also shut down, unless it was passed in by the caller.
+     */
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+        if (ownsWatchdog) {
+            watchdog.shutdown();
+        }
+    }
+
+    // Looked up reflectively, so that the rest of the application still builds and runs on older JDKs
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws UnsupportedOperationException {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual threads need JDK 21 or newer.", e);
+        }
+    }
+}
@@ -11,31 +11,64 @@
  limitations under the License.
  */
 
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * A watchdog class for preempting an executing thread after some time.
+ * A watchdog for preempting executing {@link VariantHandle}s after some time.
+ * A single watchdog is shared by all the variants of a {@link VariantExecutionBackend}, so arming a deadline doesn't
+ * create a new thread.
  * Based on the version by Scott Dick, instructor, ECE 422 at the University of Alberta.
  * Created by rishi on 2016-02-20.
  */
-public class Watchdog extends TimerTask {
-    private Thread watched;
+public class Watchdog {
+    private final ScheduledThreadPoolExecutor scheduler;
 
     /**
      * Creates an instance of the {@link Watchdog}.
-     * @param target The {@link Thread} to be monitored.
+     * @param numberOfThreads The number of scheduler threads used for firing the deadlines.
+     * @throws IllegalArgumentException Thrown if {@code numberOfThreads} is not positive.
      */
-    public Watchdog (Thread target) {
-        // Constructor sets the class variable 'watched'
-        watched = target;
+    public Watchdog(int numberOfThreads) throws IllegalArgumentException {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("The watchdog needs at least 1 thread.");
+        }
+        scheduler = new ScheduledThreadPoolExecutor(numberOfThreads, new NamedDaemonThreadFactory("watchdog"));
+        // Most deadlines are cancelled because the variant finished in time. Don't let them pile up in the queue.
+        scheduler.setRemoveOnCancelPolicy(true);
     }
 
     /**
-     * Kills the monitored thread.
+     * Arms a deadline for the monitored {@link VariantHandle}. The handle is killed if it is still running when the
+     * deadline expires.
+     * @param watched The {@link VariantHandle} to be monitored.
+     * @param timeLimitMilliseconds The time after which the {@code watched} handle is killed.
+     * @return The armed deadline. Should be cancelled once the {@code watched} handle finishes.
      */
-    @SuppressWarnings("deprecation")
-    @Override
-    public void run() {
-        watched.stop();
+    public ScheduledFuture<?> watch(final VariantHandle<?> watched, long timeLimitMilliseconds) {
+        return scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                watched.kill();
+            }
+        }, timeLimitMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules a task to be run on the watchdog after a delay, e.g. a soft deadline that doesn't kill anything.
+     * @param task The task to be run. Should be quick, since it holds up the other deadlines.
+     * @param delayNanos The delay in nanoseconds.
+     * @return The scheduled task. Can be cancelled, if it's no longer needed.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayNanos) {
+        return scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the scheduler threads. The armed deadlines will not fire anymore.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
     }
 }
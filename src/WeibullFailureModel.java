@@ -0,0 +1,60 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A {@link FailureModel} whose cumulative hazard after n accesses is {@code (n / scale)^shape}: a shape below 1
+ * gives early failures that get rarer over time, like infant mortality, 1 gives a constant rate, and above 1 gives
+ * wear out, with 2 close to the {@link LinearHazardFailureModel}, minus its cap. Drawn in closed form by inverting
+ * the hazard.
+ */
+public final class WeibullFailureModel implements FailureModel {
+    private final double scale;
+    private final double shape;
+
+    /**
+     * Creates a {@link WeibullFailureModel} object.
+     * @param scale The characteristic life in accesses: the first failure comes before it with a probability of
+     *              about 63%. Infinite, for no failures.
+     * @param shape The shape of the hazard over time.
+     * @throws IllegalArgumentException Thrown if the scale or shape is not positive.
+     */
+    public WeibullFailureModel(double scale, double shape) throws IllegalArgumentException {
+        if (!(scale > 0.0) || !(shape > 0.0)) {
+            throw new IllegalArgumentException("The Weibull scale and shape need to be positive.");
+        }
+        this.scale = scale;
+        this.shape = shape;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long nextFailureAccess(long accessCount, double uniform) {
+        double target = Math.pow(accessCount / scale, shape) - Math.log(uniform);
+        double accesses = Math.ceil(scale * Math.pow(target, 1.0 / shape));
+        if (accesses >= Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        // Rounding can land on the access that just failed
+        return Math.max(accessCount + 1, (long) accesses);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "weibull(" + scale + ", " + shape + ")";
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+#include "fault_injection.h"
+#include <stdio.h>
+#include <stdlib.h>
+
+// Used when the Java side doesn't pass a cancellation flag
+static const jint never_cancelled = 0;
+
+void fault_state_init(fault_state *state, JNIEnv *env, jlong failure_access, jobject cancellation_flag) {
+    state->access_count = 0;
+    // Long.MAX_VALUE accesses are out of reach anyway, but keep it explicit
+    state->failure_access = failure_access <= 0 || failure_access == INT64_MAX ? UINT64_MAX :
+                            (uint64_t)failure_access;
+    state->cancellation_flag = cancellation_flag == NULL ? NULL :
+                               (volatile jint *)(*env)->GetDirectBufferAddress(env, cancellation_flag);
+    if (state->cancellation_flag == NULL) {
+        state->cancellation_flag = (volatile jint *)&never_cancelled;
+    }
+    state->aborted = false;
+    state->pending_exception_class = NULL;
+    state->pending_exception_message = NULL;
+}
+
+void fault_state_abort(fault_state *state, const char *class_name, const char *message) {
+    state->aborted = true;
+    state->pending_exception_class = class_name;
+    state->pending_exception_message = message;
+}
+
+void fault_state_throw_pending(fault_state *state, JNIEnv *env) {
+    if (state->pending_exception_class == NULL) {
+        return;
+    }
+    jclass exception_class = (*env)->FindClass(env, state->pending_exception_class);
+
+    if (exception_class == NULL) {
+        printf("DEVELOPER NOTE: %s not found from JNI. Fix it!\n", state->pending_exception_class);
+        exit(-1);
+    }
+
+    (*env)->ThrowNew(env, exception_class, state->pending_exception_message);
+}
@@ -0,0 +1,70 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * The simulated memory access failures and the cooperative cancellation shared by the native sort modules.
+ *
+ * All the state of one sort lives in a fault_state owned by that JNI call, so any number of sorts can run
+ * concurrently. Since the first failure aborts the sort, only the index of that access is needed, and every access
+ * only compares a counter against it. The index is drawn on the Java side, by the SimulatedMemoryFaults of the
+ * variant's FaultSchedule, so a seeded or recorded schedule fails the native sorts at the same points as the Java
+ * ones, and there's only one implementation of the hazard model.
+ */
+
+#ifndef _Included_fault_injection
+#define _Included_fault_injection
+
+#include <jni.h>
+#include <stdbool.h>
+#include <stdint.h>
+
+typedef struct {
+    uint64_t access_count;
+    // The index of the access that fails, or UINT64_MAX if none does
+    uint64_t failure_access;
+    // Non-zero once the Java side has cancelled the sort. Lives in a direct buffer owned by the CancellationToken.
+    volatile jint *cancellation_flag;
+    // Set once the sort has failed or been cancelled, so that it unwinds instead of running on
+    bool aborted;
+    // The exception is only thrown once the array has been released, as no JNI calls are allowed while it's pinned
+    const char *pending_exception_class;
+    const char *pending_exception_message;
+} fault_state;
+
+// Resets the state for a new sort, that fails on the failure_access-th access. Never fails for Long.MAX_VALUE.
+void fault_state_init(fault_state *state, JNIEnv *env, jlong failure_access, jobject cancellation_flag);
+
+// Aborts the sort. The exception is thrown by fault_state_throw_pending(), once the sort has unwound.
+void fault_state_abort(fault_state *state, const char *class_name, const char *message);
+
+// Throws the exception of an aborted sort, if any. Needs to be called after the array has been released.
+void fault_state_throw_pending(fault_state *state, JNIEnv *env);
+
+// Records a memory access. Returns false if the access fails, or the sort has already been aborted or cancelled.
+static inline bool fault_state_access(fault_state *state) {
+    if (state->aborted) {
+        return false;
+    }
+    if (++state->access_count == state->failure_access) {
+        fault_state_abort(state, "MemoryAccessFailureException", "Random simulated failure event.");
+        return false;
+    }
+    // A single volatile load, so it's cheap enough for every access
+    if (*state->cancellation_flag != 0) {
+        fault_state_abort(state, "java/util/concurrent/CancellationException", "Cancelled.");
+        return false;
+    }
+    return true;
+}
+
+#endif
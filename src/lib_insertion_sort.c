@@ -11,100 +11,77 @@
  limitations under the License.
  */
 
-
 /**
  * A native JNI module for sorting an int list using insertion sort.
  */
 
 #include "NativeInsertionSortOperation.h"
+#include "fault_injection.h"
 #include <jni.h>
-#include <stdbool.h>
-#include <stdint.h>
-#include <time.h>
-#include <stdlib.h>
-
-void insertion_sort(jint *data, int length);
-bool check_failure();
-int get(jint *data, int index);
-void set(jint *data, int index, jint value);
-void swap(jint *data, int i, int j);
-jint throwMemoryAccessFailureException(const char *message);
 
+static void insertion_sort(fault_state *state, jint *data, int length);
+static jint get(fault_state *state, jint *data, int index);
+static void set(fault_state *state, jint *data, int index, jint value);
+static void swap(fault_state *state, jint *data, int i, int j);
 
-// Need to keep these globals for simulating the random memory failures.
-// Another option would be to pass these values around to every single function call, but this is better.
-// 'static' keyword and 'global' suffix should be good enough for safety in this small program.
-static JNIEnv *env_global = NULL;
-static uint64_t mem_access_count_global = 0;
-static double failure_probability_global = 0.0;
-
-// The public JNI insertion sort API.
+// The public JNI insertion sort API. Reentrant; all the state of a sort lives on its own stack.
 JNIEXPORT void JNICALL Java_NativeInsertionSortOperation_insertionSort
-  (JNIEnv *env, jobject object, jintArray data, jdouble failure_probability) {
+  (JNIEnv *env, jobject object, jintArray data, jlong failure_access, jobject cancellation_flag,
+   jboolean in_place) {
 
     jsize length = (*env)->GetArrayLength(env, data);
-    jint *data_c = (*env)->GetIntArrayElements(env, data, 0);
-
-    env_global = env;
-    failure_probability_global = failure_probability;
+    fault_state state;
+    fault_state_init(&state, env, failure_access, cancellation_flag);
+
+    // In place, the Java array is pinned instead of being copied. Usually a direct pointer to the heap, but the garbage
+    // collector can be held off until it's released, i.e. for the whole sort.
+    jint *data_c = in_place ? (*env)->GetPrimitiveArrayCritical(env, data, NULL) :
+                              (*env)->GetIntArrayElements(env, data, NULL);
+    if (data_c == NULL) {
+        // OutOfMemoryError already pending
+        return;
+    }
 
-    srand(time(NULL));
-    insertion_sort(data_c, length);
+    insertion_sort(&state, data_c, length);
 
-    (*env)->ReleaseIntArrayElements(env, data, data_c, 0);
+    if (in_place) {
+        // Whatever was done stays, like with the in place Java variants
+        (*env)->ReleasePrimitiveArrayCritical(env, data, data_c, 0);
+    } else {
+        // Only a sorted copy is copied back. JNI_ABORT leaves the Java array untouched by an aborted sort, as
+        // GetIntArrayElements has copied it (HotSpot always copies).
+        (*env)->ReleaseIntArrayElements(env, data, data_c, state.aborted ? JNI_ABORT : 0);
+    }
+    fault_state_throw_pending(&state, env);
 }
 
-void insertion_sort(jint *data, int length) {
-    for (int end = length; end >= 0; --end) {
-        for (int i = 0; i < end - 1; ++i) {
+static void insertion_sort(fault_state *state, jint *data, int length) {
+    for (int end = length; end >= 0 && !state->aborted; --end) {
+        for (int i = 0; i < end - 1 && !state->aborted; ++i) {
             int index = i;
-            for (int j = index + 1; j > 0 && (get(data, j) < get(data, index)); --j) {
-                swap(data, j, index--);
+            for (int j = index + 1; j > 0 && !state->aborted && (get(state, data, j) < get(state, data, index));
+                 --j) {
+                swap(state, data, j, index--);
             }
 
         }
     }
 }
 
-// Checks if a random memory access failure should be produced now.
-bool check_failure() {
-    double hazard = mem_access_count_global * failure_probability_global;
-    double random_event = (double)rand()/(double)RAND_MAX;
-    return random_event >= 0.5 && random_event <= 0.5 + hazard;
-}
-
-jint get(jint *data, int index) {
-    ++mem_access_count_global;
-    if (check_failure()) {
-        throwMemoryAccessFailureException("Random simulated failure event.");
-    }
-
+static jint get(fault_state *state, jint *data, int index) {
+    // A failed read still returns the value; the sort unwinds right after it anyway
+    fault_state_access(state);
     return data[index];
 }
 
-void set(jint *data, int index, jint value) {
-    ++mem_access_count_global;
-    if (check_failure()) {
-        throwMemoryAccessFailureException("Random simulated failure event.");
+static void set(fault_state *state, jint *data, int index, jint value) {
+    if (fault_state_access(state)) {
+        data[index] = value;
     }
-
-    data[index] = value;
 }
 
-void swap(jint *data, int i, int j) {
-    jint temp = get(data, j);
-    set(data, j, get(data, i));
-    set(data, i, temp);
+static void swap(fault_state *state, jint *data, int i, int j) {
+    jint temp = get(state, data, j);
+    set(state, data, j, get(state, data, i));
+    set(state, data, i, temp);
 }
-
-jint throwMemoryAccessFailureException(const char *message) {
-    static const char *className = "MemoryAccessFailureException";
-    jclass exceptionClass = (*env_global)->FindClass(env_global, className);
-
-    if (exceptionClass == NULL) {
-        printf("DEVELOPER NOTE: MemoryAccessFailureException not found from JNI. Fix it!\n");
-        exit(-1);
-    }
-
-    return (*env_global)->ThrowNew(env_global, exceptionClass, message);
-}
\ No newline at end of file
@@ -0,0 +1,182 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * A native JNI module for sorting an int list using introsort: quicksort with a median of three pivot, that falls
+ * back to heap sort once the recursion gets too deep, and leaves the small partitions to insertion sort. O(n log n)
+ * in the worst case. Simulates the same memory access failures as the insertion sort module.
+ */
+
+#include "NativeIntroSortOperation.h"
+#include "fault_injection.h"
+#include <jni.h>
+
+// Partitions up to this size are left to the final insertion sort
+#define INSERTION_SORT_THRESHOLD 16
+
+static void introsort(fault_state *state, jint *data, int lo, int hi, int depth_limit);
+static int partition(fault_state *state, jint *data, int lo, int hi);
+static void heap_sort(fault_state *state, jint *data, int lo, int hi);
+static void sift_down(fault_state *state, jint *data, int lo, int root, int end);
+static void insertion_sort(fault_state *state, jint *data, int length);
+static jint get(fault_state *state, jint *data, int index);
+static void set(fault_state *state, jint *data, int index, jint value);
+static void swap(fault_state *state, jint *data, int i, int j);
+
+// The public JNI introsort API. Reentrant; all the state of a sort lives on its own stack.
+JNIEXPORT void JNICALL Java_NativeIntroSortOperation_introSort
+  (JNIEnv *env, jobject object, jintArray data, jlong failure_access, jobject cancellation_flag,
+   jboolean in_place) {
+
+    jsize length = (*env)->GetArrayLength(env, data);
+    fault_state state;
+    fault_state_init(&state, env, failure_access, cancellation_flag);
+
+    // In place, the Java array is pinned instead of being copied. Usually a direct pointer to the heap, but the garbage
+    // collector can be held off until it's released, i.e. for the whole sort.
+    jint *data_c = in_place ? (*env)->GetPrimitiveArrayCritical(env, data, NULL) :
+                              (*env)->GetIntArrayElements(env, data, NULL);
+    if (data_c == NULL) {
+        // OutOfMemoryError already pending
+        return;
+    }
+
+    // 2 * floor(log2(length)) levels of quicksort, before giving up on the pivots
+    int depth_limit = 0;
+    for (jsize n = length; n > 1; n >>= 1) {
+        depth_limit += 2;
+    }
+
+    introsort(&state, data_c, 0, length - 1, depth_limit);
+    insertion_sort(&state, data_c, length);
+
+    if (in_place) {
+        // Whatever was done stays, like with the in place Java variants
+        (*env)->ReleasePrimitiveArrayCritical(env, data, data_c, 0);
+    } else {
+        // Only a sorted copy is copied back. JNI_ABORT leaves the Java array untouched by an aborted sort, as
+        // GetIntArrayElements has copied it (HotSpot always copies).
+        (*env)->ReleaseIntArrayElements(env, data, data_c, state.aborted ? JNI_ABORT : 0);
+    }
+    fault_state_throw_pending(&state, env);
+}
+
+// Sorts data[lo..hi] (inclusive) into partitions of at most INSERTION_SORT_THRESHOLD elements, that are in order
+// relative to each other.
+static void introsort(fault_state *state, jint *data, int lo, int hi, int depth_limit) {
+    while (hi - lo + 1 > INSERTION_SORT_THRESHOLD && !state->aborted) {
+        if (depth_limit-- == 0) {
+            heap_sort(state, data, lo, hi);
+            return;
+        }
+
+        int p = partition(state, data, lo, hi);
+        // Recurse into the smaller side, and loop on the larger one, so the stack stays O(log n) deep
+        if (p - lo < hi - p) {
+            introsort(state, data, lo, p, depth_limit);
+            lo = p + 1;
+        } else {
+            introsort(state, data, p + 1, hi, depth_limit);
+            hi = p;
+        }
+    }
+}
+
+// Hoare partitioning around the median of the first, middle and last elements. Returns p, such that every element
+// of data[lo..p] is <= every element of data[p+1..hi], and both sides are non-empty.
+static int partition(fault_state *state, jint *data, int lo, int hi) {
+    int mid = lo + (hi - lo) / 2;
+    if (get(state, data, mid) < get(state, data, lo)) {
+        swap(state, data, mid, lo);
+    }
+    if (get(state, data, hi) < get(state, data, lo)) {
+        swap(state, data, hi, lo);
+    }
+    if (get(state, data, hi) < get(state, data, mid)) {
+        swap(state, data, hi, mid);
+    }
+    jint pivot = get(state, data, mid);
+
+    int i = lo - 1;
+    int j = hi + 1;
+    while (!state->aborted) {
+        do {
+            ++i;
+        } while (get(state, data, i) < pivot && !state->aborted);
+        do {
+            --j;
+        } while (get(state, data, j) > pivot && !state->aborted);
+        if (i >= j) {
+            return j;
+        }
+        swap(state, data, i, j);
+    }
+    return lo;
+}
+
+static void heap_sort(fault_state *state, jint *data, int lo, int hi) {
+    int length = hi - lo + 1;
+    for (int root = length / 2 - 1; root >= 0 && !state->aborted; --root) {
+        sift_down(state, data, lo, root, length - 1);
+    }
+    for (int end = length - 1; end > 0 && !state->aborted; --end) {
+        swap(state, data, lo, lo + end);
+        sift_down(state, data, lo, 0, end - 1);
+    }
+}
+
+// Sifts down the root of the binary heap stored in data[lo..lo+end], with indices relative to lo.
+static void sift_down(fault_state *state, jint *data, int lo, int root, int end) {
+    int child;
+    while ((child = 2 * root + 1) <= end && !state->aborted) {
+        if (child < end && get(state, data, lo + child + 1) > get(state, data, lo + child)) {
+            ++child;
+        }
+        if (get(state, data, lo + child) <= get(state, data, lo + root)) {
+            return;
+        }
+        swap(state, data, lo + root, lo + child);
+        root = child;
+    }
+}
+
+// A single pass over the whole array. Cheap, since no element is more than a partition away from its place.
+static void insertion_sort(fault_state *state, jint *data, int length) {
+    for (int i = 1; i < length && !state->aborted; ++i) {
+        jint value = get(state, data, i);
+        int j = i - 1;
+        while (j >= 0 && !state->aborted && get(state, data, j) > value) {
+            set(state, data, j + 1, get(state, data, j));
+            --j;
+        }
+        set(state, data, j + 1, value);
+    }
+}
+
+static jint get(fault_state *state, jint *data, int index) {
+    // A failed read still returns the value; the sort unwinds right after it anyway
+    fault_state_access(state);
+    return data[index];
+}
+
+static void set(fault_state *state, jint *data, int index, jint value) {
+    if (fault_state_access(state)) {
+        data[index] = value;
+    }
+}
+
+static void swap(fault_state *state, jint *data, int i, int j) {
+    jint temp = get(state, data, j);
+    set(state, data, j, get(state, data, i));
+    set(state, data, i, temp);
+}
@@ -0,0 +1,119 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tests the learned time limits of the {@link AdaptiveDeadlinePolicy}, and their back-off after timeouts.
+ */
+public class AdaptiveDeadlinePolicyTest {
+    private static final long DEFAULT_MILLISECONDS = 100;
+    private static final long MINIMUM_MILLISECONDS = 10;
+    private static final long MAXIMUM_MILLISECONDS = 1000000;
+    private static final double SAFETY_FACTOR = 3;
+    private static final int MINIMUM_SAMPLES = 4;
+
+    public static void testDefaultUntilEnoughSamples() {
+        AdaptiveDeadlinePolicy policy = createPolicy();
+        Variant<Void> variant = new NamedVariant("few samples");
+        for (int i = 1; i < MINIMUM_SAMPLES; ++i) {
+            policy.recordRunTime(variant, 1000 * i, 1000000000L);
+            Assert.assertEquals("The time limit", DEFAULT_MILLISECONDS, policy.getTimeLimitMilliseconds(variant, 1000));
+        }
+    }
+
+    public static void testFitsTheGrowthRate() {
+        AdaptiveDeadlinePolicy policy = createPolicy();
+        Variant<Void> variant = new NamedVariant("quadratic");
+        // t = 10 ns * n^2
+        for (int n = 1000; n <= 8000; n *= 2) {
+            policy.recordRunTime(variant, n, 10L * n * n);
+        }
+
+        long expectedMilliseconds = (long) Math.ceil(SAFETY_FACTOR * 10.0 * 16000 * 16000 / 1e6);
+        long timeLimitMilliseconds = policy.getTimeLimitMilliseconds(variant, 16000);
+        Assert.assertTrue(String.format("The extrapolated time limit: expected about %d, but was %d.",
+                expectedMilliseconds, timeLimitMilliseconds),
+                Math.abs(timeLimitMilliseconds - expectedMilliseconds) <= expectedMilliseconds / 100);
+        Assert.assertEquals("The time limit of the other variants", DEFAULT_MILLISECONDS,
+                policy.getTimeLimitMilliseconds(new NamedVariant("unknown"), 16000));
+    }
+
+    public static void testLearnedLimitsAreBounded() {
+        AdaptiveDeadlinePolicy policy = createPolicy();
+        Variant<Void> variant = new NamedVariant("fast");
+        for (int n = 1000; n <= 8000; n *= 2) {
+            policy.recordRunTime(variant, n, 1000);
+        }
+
+        Assert.assertEquals("The time limit", MINIMUM_MILLISECONDS, policy.getTimeLimitMilliseconds(variant, 16000));
+    }
+
+    public static void testTimeoutsDoubleTheLimit() {
+        AdaptiveDeadlinePolicy policy = new AdaptiveDeadlinePolicy(DEFAULT_MILLISECONDS, MINIMUM_MILLISECONDS, 1000,
+                SAFETY_FACTOR, 64, MINIMUM_SAMPLES);
+        Variant<Void> variant = new NamedVariant("timing out");
+        long[] expectedMilliseconds = {200, 400, 800, 1000, 1000};
+        for (long expected : expectedMilliseconds) {
+            policy.recordTimeout(variant, 1000);
+            Assert.assertEquals("The time limit after a timeout", expected,
+                    policy.getTimeLimitMilliseconds(variant, 1000));
+        }
+    }
+
+    public static void testAcceptableRunsHalveTheLimit() {
+        AdaptiveDeadlinePolicy policy = createPolicy();
+        Variant<Void> variant = new NamedVariant("recovering");
+        for (int i = 0; i < 4; ++i) {
+            policy.recordTimeout(variant, 1000);
+        }
+        Assert.assertEquals("The time limit after the timeouts", 16 * DEFAULT_MILLISECONDS,
+                policy.getTimeLimitMilliseconds(variant, 1000));
+
+        // Fewer samples than needed for a fit, so only the back-off changes
+        long[] expectedMilliseconds = {800, 400, 200};
+        for (long expected : expectedMilliseconds) {
+            policy.recordRunTime(variant, 1000, 1000000);
+            Assert.assertEquals("The time limit after an acceptable run", expected,
+                    policy.getTimeLimitMilliseconds(variant, 1000));
+        }
+        policy.recordRunTime(variant, 1000, 1000000);
+        // Now fitted, to the 1 ms of the samples
+        Assert.assertEquals("The time limit after the back-off", MINIMUM_MILLISECONDS,
+                policy.getTimeLimitMilliseconds(variant, 1000));
+    }
+
+    private static AdaptiveDeadlinePolicy createPolicy() {
+        return new AdaptiveDeadlinePolicy(DEFAULT_MILLISECONDS, MINIMUM_MILLISECONDS, MAXIMUM_MILLISECONDS,
+                SAFETY_FACTOR, 64, MINIMUM_SAMPLES);
+    }
+
+    /**
+     * A variant that only has a name, since the policy never runs it.
+     */
+    private static class NamedVariant implements Variant<Void> {
+        private final String name;
+
+        public NamedVariant(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Void execute() {
+            return null;
+        }
+    }
+}
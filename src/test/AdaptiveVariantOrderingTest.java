@@ -0,0 +1,129 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that the {@link AdaptiveVariantOrdering} demotes the variants that keep failing or running slowly, and still
+ * tries them first now and then.
+ */
+public class AdaptiveVariantOrderingTest {
+    private static final int MINIMUM_SAMPLES = 10;
+    private static final long MILLISECOND_NANOS = 1000000;
+    private static final int ORDERINGS = 1000;
+
+    public static void testFailingVariantIsDemoted() {
+        AdaptiveVariantOrdering ordering = new AdaptiveVariantOrdering(100, MINIMUM_SAMPLES, 0);
+        NamedVariant primary = new NamedVariant("failing primary");
+        NamedVariant backup = new NamedVariant("reliable backup");
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(primary, false, MILLISECOND_NANOS);
+            ordering.recordOutcome(backup, true, MILLISECOND_NANOS);
+        }
+
+        Assert.assertEquals("The order", Arrays.asList(backup, primary), ordering.order(variants(primary, backup)));
+    }
+
+    public static void testSlowVariantIsDemoted() {
+        AdaptiveVariantOrdering ordering = new AdaptiveVariantOrdering(100, MINIMUM_SAMPLES, 0);
+        NamedVariant primary = new NamedVariant("slow primary");
+        NamedVariant backup = new NamedVariant("fast backup");
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(primary, true, 100 * MILLISECOND_NANOS);
+            ordering.recordOutcome(backup, true, MILLISECOND_NANOS);
+        }
+
+        Assert.assertEquals("The order", Arrays.asList(backup, primary), ordering.order(variants(primary, backup)));
+    }
+
+    public static void testConfiguredOrderUntilEnoughSamples() {
+        AdaptiveVariantOrdering ordering = new AdaptiveVariantOrdering(100, MINIMUM_SAMPLES, 0);
+        NamedVariant primary = new NamedVariant("new primary");
+        NamedVariant backup = new NamedVariant("new backup");
+        for (int i = 0; i < MINIMUM_SAMPLES - 1; ++i) {
+            ordering.recordOutcome(primary, false, MILLISECOND_NANOS);
+        }
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(backup, true, MILLISECOND_NANOS);
+        }
+
+        Assert.assertEquals("The order", Arrays.asList(primary, backup), ordering.order(variants(primary, backup)));
+    }
+
+    public static void testDemotedVariantIsStillExplored() {
+        double explorationProbability = 0.2;
+        AdaptiveVariantOrdering ordering = new AdaptiveVariantOrdering(100, MINIMUM_SAMPLES, explorationProbability);
+        NamedVariant primary = new NamedVariant("explored primary");
+        NamedVariant backup = new NamedVariant("explored backup");
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(primary, false, MILLISECOND_NANOS);
+            ordering.recordOutcome(backup, true, MILLISECOND_NANOS);
+        }
+
+        int primaryFirst = 0;
+        for (int i = 0; i < ORDERINGS; ++i) {
+            if (ordering.order(variants(primary, backup)).get(0) == primary) {
+                ++primaryFirst;
+            }
+        }
+        // Far more than enough standard deviations of the binomial count, so it practically never fails by chance
+        double fraction = (double) primaryFirst / ORDERINGS;
+        Assert.assertTrue(String.format("The demoted primary should come first on about %.2f of the jobs, but did "
+                + "on %.3f.", explorationProbability, fraction), Math.abs(fraction - explorationProbability) < 0.1);
+    }
+
+    public static void testRecoveredVariantIsPromotedAgain() {
+        AdaptiveVariantOrdering ordering = new AdaptiveVariantOrdering(MINIMUM_SAMPLES, MINIMUM_SAMPLES, 0);
+        NamedVariant primary = new NamedVariant("recovered primary");
+        NamedVariant backup = new NamedVariant("slower backup");
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(primary, false, MILLISECOND_NANOS);
+            ordering.recordOutcome(backup, true, 10 * MILLISECOND_NANOS);
+        }
+        Assert.assertEquals("The order while failing", Arrays.asList(backup, primary),
+                ordering.order(variants(primary, backup)));
+
+        // The old failures slide out of the window
+        for (int i = 0; i < MINIMUM_SAMPLES; ++i) {
+            ordering.recordOutcome(primary, true, MILLISECOND_NANOS);
+        }
+        Assert.assertEquals("The order after recovering", Arrays.asList(primary, backup),
+                ordering.order(variants(primary, backup)));
+    }
+
+    private static List<Variant<Void>> variants(NamedVariant primary, NamedVariant backup) {
+        return Arrays.<Variant<Void>>asList(primary, backup);
+    }
+
+    /**
+     * A variant that only has a name, since the ordering never runs it.
+     */
+    private static class NamedVariant implements Variant<Void> {
+        private final String name;
+
+        public NamedVariant(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Void execute() {
+            return null;
+        }
+    }
+}
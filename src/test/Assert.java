@@ -0,0 +1,58 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The assertions of the tests. Unlike the {@code assert} statement, they don't depend on the JVM's -ea flag.
+ */
+public final class Assert {
+    private Assert() {
+    }
+
+    public static void fail(String message) {
+        throw new AssertionError(message);
+    }
+
+    public static void assertTrue(String message, boolean condition) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    public static void assertEquals(String message, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            fail(String.format("%s: expected <%s>, but was <%s>.", message, expected, actual));
+        }
+    }
+
+    public static void assertEquals(String message, long expected, long actual) {
+        if (expected != actual) {
+            fail(String.format("%s: expected <%d>, but was <%d>.", message, expected, actual));
+        }
+    }
+
+    public static void assertArrayEquals(String message, int[] expected, int[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            fail(message + ": the arrays differ.");
+        }
+    }
+
+    public static void assertArrayEquals(String message, long[] expected, long[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            fail(String.format("%s: expected %s, but was %s.", message, Arrays.toString(expected),
+                    Arrays.toString(actual)));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the {@link CheckpointResumingVariant}, resuming from the checkpoints of a failed heap sort.
+ */
+public class CheckpointResumingVariantTest {
+    private static final int ELEMENTS = 10000;
+    // Fails the primary once it's well into its extractions
+    private static final long PRIMARY_FAILURE_ACCESS = 200000;
+
+    public static void testSortsTheWholeInputWithoutACheckpoint() {
+        int[] data = TestData.randomInts(ELEMENTS, 1);
+        int[] expected = TestData.sorted(data);
+        PrefixSorter prefixSorter = new PrefixSorter();
+
+        int[] result = new CheckpointResumingVariant(new IntHeapSortOperation(data, 0.0), data, new SortCheckpoint(),
+                prefixSorter).execute();
+
+        Assert.assertArrayEquals("The sorted array", expected, result);
+        Assert.assertTrue("The prefix sorter shouldn't be used", prefixSorter.prefixLengths.isEmpty());
+    }
+
+    public static void testResumesFromAFailedSort() {
+        int[] data = TestData.randomInts(ELEMENTS, 2);
+        int[] expected = TestData.sorted(data);
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        failPrimary(data.clone(), checkpoint);
+        PrefixSorter prefixSorter = new PrefixSorter();
+
+        int[] result = new CheckpointResumingVariant(new UnusedVariant(), data, checkpoint, prefixSorter).execute();
+
+        Assert.assertArrayEquals("The sorted array", expected, result);
+        Assert.assertEquals("The prefixes sorted", 1, (long) prefixSorter.prefixLengths.size());
+        int prefixLength = prefixSorter.prefixLengths.get(0);
+        Assert.assertTrue("Only a part of the input should be left to sort, not " + prefixLength,
+                prefixLength > 0 && prefixLength < ELEMENTS);
+    }
+
+    public static void testStartsOverFromACheckpointOfAnotherInput() {
+        int[] data = TestData.randomInts(ELEMENTS, 3);
+        int[] expected = TestData.sorted(data);
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        failPrimary(TestData.randomInts(ELEMENTS, 4), checkpoint);
+        PrefixSorter prefixSorter = new PrefixSorter();
+
+        int[] result = new CheckpointResumingVariant(new IntHeapSortOperation(data, 0.0), data, checkpoint,
+                prefixSorter).execute();
+
+        Assert.assertArrayEquals("The sorted array", expected, result);
+        Assert.assertTrue("The prefix sorter shouldn't be used", prefixSorter.prefixLengths.isEmpty());
+    }
+
+    public static void testNullArgumentsAreRejected() {
+        try {
+            new CheckpointResumingVariant(new UnusedVariant(), new int[1], null, new PrefixSorter());
+            Assert.fail("The checkpoint should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * Runs a heap sort, that publishes its progress to the {@code checkpoint}, until it fails.
+     */
+    private static void failPrimary(int[] data, SortCheckpoint checkpoint) {
+        FailureModel failOnce = new FailureModel() {
+            @Override
+            public long nextFailureAccess(long accessCount, double uniform) {
+                return accessCount == 0 ? PRIMARY_FAILURE_ACCESS : Long.MAX_VALUE;
+            }
+        };
+        try {
+            new IntHeapSortOperation(data, FaultSchedule.seeded(1).stream("primary", failOnce),
+                    HeapSortOperation.DEFAULT_ARITY, checkpoint).execute();
+            Assert.fail("The primary should fail.");
+        } catch (MemoryAccessFailureException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * Sorts the unsorted prefixes of the restored checkpoints, recording their lengths.
+     */
+    private static class PrefixSorter implements OperationFactory<int[]> {
+        private final List<Integer> prefixLengths = new ArrayList<>();
+
+        @Override
+        public Operation<int[]> create(int[] input, long offset) {
+            Assert.assertEquals("The offset of a prefix", 0, offset);
+            prefixLengths.add(input.length);
+            return new IntHeapSortOperation(input, 0.0);
+        }
+    }
+
+    /**
+     * A variant that shouldn't run, since the sort resumes from a checkpoint.
+     */
+    private static class UnusedVariant implements Variant<int[]> {
+        @Override
+        public String getName() {
+            return "unused";
+        }
+
+        @Override
+        public int[] execute() {
+            Assert.fail("The wrapped variant shouldn't run.");
+            return null;
+        }
+    }
+}
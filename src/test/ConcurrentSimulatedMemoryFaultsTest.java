@@ -0,0 +1,124 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that the {@link ConcurrentSimulatedMemoryFaults} keep one global hazard over all the threads.
+ */
+public class ConcurrentSimulatedMemoryFaultsTest {
+    // Spans several blocks, up to the largest ones
+    private static final long[] FAILURE_ACCESSES = {5, 16, 17, 40, 1000, 5000, 5001, 12345};
+    // Some accesses past the last failure point, that shouldn't fail
+    private static final int EXTRA_ACCESSES = 5000;
+    private static final int THREADS = 4;
+    private static final int ACCESSES_PER_THREAD = 25000;
+
+    public static void testSingleThreadFailsLikeTheSource() {
+        ConcurrentSimulatedMemoryFaults faults = new ConcurrentSimulatedMemoryFaults(
+                new SimulatedMemoryFaults(FAILURE_ACCESSES.clone()));
+
+        Assert.assertArrayEquals("The failing accesses", FAILURE_ACCESSES, failuresOf(faults, false));
+    }
+
+    public static void testThreadFaultsCountTowardsTheSameHazard() {
+        ConcurrentSimulatedMemoryFaults faults = new ConcurrentSimulatedMemoryFaults(
+                new SimulatedMemoryFaults(FAILURE_ACCESSES.clone()));
+
+        Assert.assertArrayEquals("The failing accesses", FAILURE_ACCESSES, failuresOf(faults, true));
+    }
+
+    public static void testHazardIsGlobalOverTheThreads() throws InterruptedException {
+        // Every 100th access, beyond the accesses of any one thread, but within those of all of them
+        long[] failureAccesses = new long[201];
+        for (int i = 0; i < failureAccesses.length; ++i) {
+            failureAccesses[i] = 40000 + 100L * i;
+        }
+        final ConcurrentSimulatedMemoryFaults faults = new ConcurrentSimulatedMemoryFaults(
+                new SimulatedMemoryFaults(failureAccesses));
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; ++i) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    MemoryFaults threadFaults = faults.forCurrentThread();
+                    for (int access = 0; access < ACCESSES_PER_THREAD; ++access) {
+                        try {
+                            threadFaults.access();
+                        } catch (MemoryAccessFailureException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // A thread skips the rest of its last block, of at most 1024 indices, along with its failure points
+        int maxSkippedFailures = THREADS * (1024 / 100 + 1);
+        Assert.assertTrue("The failures over all the threads: " + failures.get(),
+                failures.get() >= failureAccesses.length - maxSkippedFailures &&
+                        failures.get() <= failureAccesses.length);
+    }
+
+    public static void testNullSourceIsRejected() {
+        try {
+            new ConcurrentSimulatedMemoryFaults((SimulatedMemoryFaults) null);
+            Assert.fail("The failure source should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    /**
+     * Accesses the faults from the calling thread until past the last failure point.
+     * @param alternate True, for alternating between the faults and the calling thread's faults.
+     * @return The indices of the failing accesses.
+     */
+    private static long[] failuresOf(ConcurrentSimulatedMemoryFaults faults, boolean alternate) {
+        MemoryFaults threadFaults = faults.forCurrentThread();
+        long lastFailureAccess = FAILURE_ACCESSES[FAILURE_ACCESSES.length - 1];
+        List<Long> failures = new ArrayList<>();
+        for (long access = 1; access <= lastFailureAccess + EXTRA_ACCESSES; ++access) {
+            try {
+                if (alternate && access % 2 == 0) {
+                    threadFaults.access();
+                } else {
+                    faults.access();
+                }
+            } catch (MemoryAccessFailureException e) {
+                failures.add(access);
+            }
+        }
+        long[] failureAccesses = new long[failures.size()];
+        for (int i = 0; i < failureAccesses.length; ++i) {
+            failureAccesses[i] = failures.get(i);
+        }
+        return failureAccesses;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the {@link ExternalMergeSorter}, including resuming a sort that crashed half way.
+ */
+public class ExternalMergeSorterTest {
+    private static final long MEMORY_BUDGET_BYTES = ExternalMergeSorter.MIN_MEMORY_BUDGET_BYTES;
+    // The chunk size of the budget, 16 bytes per element
+    private static final int CHUNK_ELEMENTS = (int) (MEMORY_BUDGET_BYTES / 16);
+    // A few chunks, the last of them partial
+    private static final int ELEMENTS = 3 * CHUNK_ELEMENTS + CHUNK_ELEMENTS / 2;
+
+    public static void testSortsAcrossChunks() throws IOException {
+        Path directory = Files.createTempDirectory("external-sort");
+        try {
+            int[] input = TestData.randomInts(ELEMENTS, 1);
+            Path inputFile = directory.resolve("input.txt");
+            Path outputFile = directory.resolve("output.txt");
+            FileIOUtils.writeIntsToFile(inputFile.toString(), input);
+            ChunkSorter chunkSorter = new ChunkSorter(-1);
+
+            new ExternalMergeSorter(MEMORY_BUDGET_BYTES, directory.resolve("work"), chunkSorter)
+                    .sort(inputFile, outputFile);
+
+            Assert.assertArrayEquals("The output", TestData.sorted(input),
+                    FileIOUtils.readIntsFromFile(outputFile.toString()));
+            Assert.assertEquals("The sorted chunks", Arrays.asList(0L, (long) CHUNK_ELEMENTS,
+                    2L * CHUNK_ELEMENTS, 3L * CHUNK_ELEMENTS), chunkSorter.offsets);
+            Assert.assertTrue("The work directory should be cleaned up", !Files.exists(directory.resolve("work")));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    public static void testResumesAfterACrash() throws IOException {
+        Path directory = Files.createTempDirectory("external-sort");
+        try {
+            int[] input = TestData.randomInts(ELEMENTS, 2);
+            Path inputFile = directory.resolve("input.txt");
+            Path outputFile = directory.resolve("output.txt");
+            Path workDirectory = directory.resolve("work");
+            FileIOUtils.writeIntsToFile(inputFile.toString(), input);
+
+            ChunkSorter crashingSorter = new ChunkSorter(2L * CHUNK_ELEMENTS);
+            try {
+                new ExternalMergeSorter(MEMORY_BUDGET_BYTES, workDirectory, crashingSorter).sort(inputFile, outputFile);
+                Assert.fail("The sort should crash on the third chunk.");
+            } catch (IllegalStateException expected) {
+                // Expected
+            }
+            Assert.assertTrue("The crashed sort shouldn't write the output", !Files.exists(outputFile));
+
+            ChunkSorter resumingSorter = new ChunkSorter(-1);
+            new ExternalMergeSorter(MEMORY_BUDGET_BYTES, workDirectory, resumingSorter).sort(inputFile, outputFile);
+
+            Assert.assertEquals("The chunks sorted after resuming", Arrays.asList(2L * CHUNK_ELEMENTS,
+                    3L * CHUNK_ELEMENTS), resumingSorter.offsets);
+            Assert.assertArrayEquals("The output", TestData.sorted(input),
+                    FileIOUtils.readIntsFromFile(outputFile.toString()));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    public static void testStartsOverForAModifiedInput() throws IOException {
+        Path directory = Files.createTempDirectory("external-sort");
+        try {
+            Path inputFile = directory.resolve("input.txt");
+            Path outputFile = directory.resolve("output.txt");
+            Path workDirectory = directory.resolve("work");
+            FileIOUtils.writeIntsToFile(inputFile.toString(), TestData.randomInts(ELEMENTS, 3));
+            try {
+                new ExternalMergeSorter(MEMORY_BUDGET_BYTES, workDirectory, new ChunkSorter(CHUNK_ELEMENTS))
+                        .sort(inputFile, outputFile);
+                Assert.fail("The sort should crash on the second chunk.");
+            } catch (IllegalStateException expected) {
+                // Expected
+            }
+
+            int[] modifiedInput = TestData.randomInts(ELEMENTS + 1, 4);
+            FileIOUtils.writeIntsToFile(inputFile.toString(), modifiedInput);
+            ChunkSorter chunkSorter = new ChunkSorter(-1);
+            new ExternalMergeSorter(MEMORY_BUDGET_BYTES, workDirectory, chunkSorter).sort(inputFile, outputFile);
+
+            Assert.assertEquals("The first chunk sorted after the modification", 0, (long) chunkSorter.offsets.get(0));
+            Assert.assertArrayEquals("The output", TestData.sorted(modifiedInput),
+                    FileIOUtils.readIntsFromFile(outputFile.toString()));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+                for (Path child : entries) {
+                    children.add(child);
+                }
+            }
+            for (Path child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Sorts the chunks, recording their offsets, and crashes on the chunk at a given offset.
+     */
+    private static class ChunkSorter implements OperationFactory<int[]> {
+        private final long crashOffset;
+        private final List<Long> offsets = new ArrayList<>();
+
+        public ChunkSorter(long crashOffset) {
+            this.crashOffset = crashOffset;
+        }
+
+        @Override
+        public Operation<int[]> create(final int[] input, long offset) {
+            if (offset == crashOffset) {
+                throw new IllegalStateException("A simulated crash.");
+            }
+            offsets.add(offset);
+            return new Operation<int[]>() {
+                @Override
+                public int[] execute() {
+                    return TestData.sorted(input);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tests the hazard shapes of the {@link FailureModel}s against their analytic means, through seeded
+ * {@link SimulatedMemoryFaults}, so the results are the same on every run.
+ */
+public class FailureModelTest {
+    private static final int SAMPLES = 20000;
+    // Several standard errors of the sample means above
+    private static final double TOLERANCE = 0.03;
+
+    public static void testLinearHazardFirstFailure() {
+        // The first failure of a linear hazard is Rayleigh distributed, with a mean of sqrt(pi / 2p)
+        double p = 1e-6;
+        assertClose("The mean first failure", Math.sqrt(Math.PI / (2 * p)),
+                meanFirstFailure(new LinearHazardFailureModel(p)));
+    }
+
+    public static void testLinearHazardIsCapped() {
+        // Past the ramp of 0.5 / p accesses, every other access fails
+        SimulatedMemoryFaults faults = new SimulatedMemoryFaults(new LinearHazardFailureModel(0.01), 1, false);
+        while (faults.getFailureAccess() < 1000) {
+            faults.skipToNextFailure();
+        }
+        assertClose("The mean gap past the ramp", 2, meanGap(faults));
+    }
+
+    public static void testConstantRateIsMemoryless() {
+        double p = 1e-3;
+        FailureModel model = new ConstantRateFailureModel(p);
+        assertClose("The mean first failure", 1 / p, meanFirstFailure(model));
+        assertClose("The mean gap", 1 / p, meanGap(new SimulatedMemoryFaults(model, 1, false)));
+    }
+
+    public static void testWeibullShapes() {
+        double scale = 1000;
+        // The mean first failure is scale * Gamma(1 + 1 / shape)
+        assertClose("The mean first failure of shape 1", scale,
+                meanFirstFailure(new WeibullFailureModel(scale, 1)));
+        assertClose("The mean first failure of shape 2", scale * Math.sqrt(Math.PI) / 2,
+                meanFirstFailure(new WeibullFailureModel(scale, 2)));
+        assertClose("The mean first failure of shape 0.5", 2 * scale,
+                meanFirstFailure(new WeibullFailureModel(scale, 0.5)));
+
+        // Early failures get rarer below a shape of 1, and wear out makes the later ones more frequent above it
+        Assert.assertTrue("The failures of shape 0.5 should spread out",
+                meanGap(new SimulatedMemoryFaults(new WeibullFailureModel(scale, 0.5), 1, false)) > 10 * scale);
+        Assert.assertTrue("The failures of shape 2 should crowd together",
+                meanGap(new SimulatedMemoryFaults(new WeibullFailureModel(scale, 2), 1, false)) < scale / 10);
+    }
+
+    public static void testBurstsCluster() {
+        double p = 1e-3;
+        double q = 0.9;
+        double burstGap = 10;
+        SimulatedMemoryFaults faults = new SimulatedMemoryFaults(new BurstFailureModel(p, q, burstGap), 1, false);
+
+        int shortGaps = 0;
+        long previous = faults.getFailureAccess();
+        for (int i = 0; i < SAMPLES; ++i) {
+            long next = faults.skipToNextFailure();
+            if (next - previous <= 5 * burstGap) {
+                ++shortGaps;
+            }
+            previous = next;
+        }
+        // Within a burst, the short gaps are almost all of them; outside, 1 - (1 - p)^50 of them
+        double expectedShortGaps = q * (1 - Math.pow(1 - 1 / burstGap, 5 * burstGap)) +
+                (1 - q) * (1 - Math.pow(1 - p, 5 * burstGap));
+        assertClose("The fraction of short gaps", expectedShortGaps, (double) shortGaps / SAMPLES);
+        assertClose("The mean gap", (1 - q) / p + q * burstGap,
+                meanGap(new SimulatedMemoryFaults(new BurstFailureModel(p, q, burstGap), 2, false)));
+    }
+
+    public static void testZeroProbabilityNeverFails() {
+        FailureModel[] models = {new LinearHazardFailureModel(0), new ConstantRateFailureModel(0),
+                new WeibullFailureModel(Double.POSITIVE_INFINITY, 2), new BurstFailureModel(0, 0.5, 10)};
+        for (FailureModel model : models) {
+            Assert.assertEquals("The failure point of " + model, Long.MAX_VALUE,
+                    new SimulatedMemoryFaults(model, 1, false).getFailureAccess());
+        }
+    }
+
+    public static void testInvalidParametersAreRejected() {
+        assertRejected(new Runnable() {
+            @Override
+            public void run() {
+                new LinearHazardFailureModel(1.5);
+            }
+        });
+        assertRejected(new Runnable() {
+            @Override
+            public void run() {
+                new ConstantRateFailureModel(-0.1);
+            }
+        });
+        assertRejected(new Runnable() {
+            @Override
+            public void run() {
+                new WeibullFailureModel(1000, 0);
+            }
+        });
+        assertRejected(new Runnable() {
+            @Override
+            public void run() {
+                new BurstFailureModel(1e-3, 0.5, 0.5);
+            }
+        });
+    }
+
+    private static double meanFirstFailure(FailureModel model) {
+        double sum = 0;
+        for (int seed = 0; seed < SAMPLES; ++seed) {
+            sum += new SimulatedMemoryFaults(model, seed, false).getFailureAccess();
+        }
+        return sum / SAMPLES;
+    }
+
+    private static double meanGap(SimulatedMemoryFaults faults) {
+        long first = faults.getFailureAccess();
+        long last = first;
+        for (int i = 0; i < SAMPLES; ++i) {
+            last = faults.skipToNextFailure();
+        }
+        return (double) (last - first) / SAMPLES;
+    }
+
+    private static void assertClose(String message, double expected, double actual) {
+        Assert.assertTrue(String.format("%s: expected about %.2f, but was %.2f.", message, expected, actual),
+                Math.abs(actual - expected) <= TOLERANCE * expected);
+    }
+
+    private static void assertRejected(Runnable construction) {
+        try {
+            construction.run();
+            Assert.fail("The parameters should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
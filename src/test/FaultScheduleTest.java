@@ -0,0 +1,123 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests that the {@link FaultSchedule}s reproduce their failure points, seeded and replayed.
+ */
+public class FaultScheduleTest {
+    private static final double FAILURE_PROBABILITY = 1e-4;
+    private static final int FAILURES = 32;
+
+    public static void testSeededSchedulesRepeatTheirFailures() {
+        long[] expected = failuresOf(FaultSchedule.seeded(42).stream("primary/0", FAILURE_PROBABILITY));
+        long[] actual = failuresOf(FaultSchedule.seeded(42).stream("primary/0", FAILURE_PROBABILITY));
+
+        Assert.assertArrayEquals("The failure points of the same seed", expected, actual);
+    }
+
+    public static void testSeededFailuresDependOnTheSeedAndTheKey() {
+        long[] failures = failuresOf(FaultSchedule.seeded(42).stream("primary/0", FAILURE_PROBABILITY));
+
+        Assert.assertTrue("Another seed should fail elsewhere", failures[0] !=
+                failuresOf(FaultSchedule.seeded(43).stream("primary/0", FAILURE_PROBABILITY))[0]);
+        Assert.assertTrue("Another stream should fail elsewhere", failures[0] !=
+                failuresOf(FaultSchedule.seeded(42).stream("primary/1", FAILURE_PROBABILITY))[0]);
+    }
+
+    public static void testSeededFailuresDontDependOnTheOrderOfTheStreams() {
+        FaultSchedule schedule = FaultSchedule.seeded(7);
+        long[] primary = failuresOf(schedule.stream("primary/0", FAILURE_PROBABILITY));
+        long[] backup = failuresOf(schedule.stream("backup/0", FAILURE_PROBABILITY));
+
+        FaultSchedule reversed = FaultSchedule.seeded(7);
+        Assert.assertArrayEquals("The backup's failure points", backup,
+                failuresOf(reversed.stream("backup/0", FAILURE_PROBABILITY)));
+        Assert.assertArrayEquals("The primary's failure points", primary,
+                failuresOf(reversed.stream("primary/0", FAILURE_PROBABILITY)));
+    }
+
+    public static void testEveryUseOfAStreamFailsDifferently() {
+        FaultSchedule.Stream stream = FaultSchedule.seeded(42).stream("primary/0", FAILURE_PROBABILITY);
+
+        Assert.assertTrue("The second use should fail elsewhere",
+                stream.createFaults().getFailureAccess() != stream.createFaults().getFailureAccess());
+    }
+
+    public static void testSavedSchedulesReplayTheirFailures() throws IOException {
+        FaultSchedule recording = FaultSchedule.recording(42);
+        FaultSchedule.Stream recordedStream = recording.stream("primary/0", FAILURE_PROBABILITY);
+        long[] firstUse = failuresOf(recordedStream);
+        long[] secondUse = failuresOf(recordedStream);
+        long nativeFailure = recording.stream("backup/0", FAILURE_PROBABILITY).createFaults().getFailureAccess();
+
+        Path file = Files.createTempFile("fault-schedule", ".flt");
+        try {
+            recording.save(file);
+            FaultSchedule replaying = FaultSchedule.load(file);
+            // Another model, since a replayed schedule doesn't draw the recorded failure points again
+            FaultSchedule.Stream replayedStream = replaying.stream("primary/0", new ConstantRateFailureModel(0.5));
+
+            Assert.assertArrayEquals("The replayed failure points of the first use", firstUse,
+                    failuresOf(replayedStream));
+            Assert.assertArrayEquals("The replayed failure points of the second use", secondUse,
+                    failuresOf(replayedStream));
+            Assert.assertEquals("The replayed failure point of a native sort", nativeFailure,
+                    replaying.stream("backup/0", FAILURE_PROBABILITY).createFaults().getFailureAccess());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public static void testLoadingRejectsOtherFiles() throws IOException {
+        Path file = Files.createTempFile("fault-schedule", ".flt");
+        try {
+            Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+            FaultSchedule.load(file);
+            Assert.fail("Loading a file that isn't a schedule should fail.");
+        } catch (IOException expected) {
+            // Expected
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    public static void testOnlyRecordingSchedulesCanBeSaved() throws IOException {
+        Path file = Files.createTempFile("fault-schedule", ".flt");
+        try {
+            FaultSchedule.seeded(42).save(file);
+            Assert.fail("Saving a schedule that isn't recording should fail.");
+        } catch (IllegalStateException expected) {
+            // Expected
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Runs the faults of the next use of the {@code stream} up to their first {@value #FAILURES} failures.
+     * @return The failure points, counting the accesses from 1.
+     */
+    private static long[] failuresOf(FaultSchedule.Stream stream) {
+        SimulatedMemoryFaults faults = stream.createFaults();
+        long[] failures = new long[FAILURES];
+        for (int i = 0; i < FAILURES; ++i) {
+            failures[i] = faults.getFailureAccess();
+            faults.skipToNextFailure();
+        }
+        return failures;
+    }
+}
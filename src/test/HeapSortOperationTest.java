@@ -0,0 +1,81 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the {@link HeapSortOperation}.
+ */
+public class HeapSortOperationTest {
+
+    public static void testSortsWithEveryArity() {
+        for (int arity = 2; arity <= 8; ++arity) {
+            List<Integer> data = toList(TestData.randomInts(3000, arity));
+            List<Integer> expected = new ArrayList<>(data);
+            Collections.sort(expected);
+
+            Assert.assertEquals("The sorted list of arity " + arity, expected,
+                    new HeapSortOperation<>(data, arity).execute());
+        }
+    }
+
+    public static void testSortsDuplicates() {
+        List<Integer> data = toList(TestData.randomDuplicates(1000, 1));
+        List<Integer> expected = new ArrayList<>(data);
+        Collections.sort(expected);
+
+        Assert.assertEquals("The sorted list", expected, new HeapSortOperation<>(data).execute());
+    }
+
+    public static void testUnaryHeapIsRejected() {
+        try {
+            new HeapSortOperation<>(new ArrayList<Integer>(), 1);
+            Assert.fail("The arity should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    public static void testSizingDoesntTouchTheList() {
+        CountingFaults faults = new CountingFaults();
+        List<Integer> data = new RandomlyFailingList<>(new ArrayList<>(Arrays.asList(3, 1, 2)), faults);
+        HeapSortOperation<Integer> operation = new HeapSortOperation<>(data);
+        int accesses = faults.accesses;
+
+        Assert.assertEquals("The input size", 3, operation.getInputSize());
+        Assert.assertEquals("The accesses of the list", accesses, faults.accesses);
+    }
+
+    private static List<Integer> toList(int[] ints) {
+        List<Integer> list = new ArrayList<>(ints.length);
+        for (int i : ints) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    /**
+     * Counts the accesses, and never fails.
+     */
+    private static class CountingFaults implements MemoryFaults {
+        private int accesses = 0;
+
+        @Override
+        public void access() {
+            ++accesses;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tests the {@link LongHeapSortOperation}.
+ */
+public class LongHeapSortOperationTest {
+
+    public static void testSortsInPlace() {
+        long[] data = TestData.randomLongs(10000, 1);
+        long[] expected = TestData.sorted(data);
+
+        long[] result = new LongHeapSortOperation(data, 0.0).execute();
+
+        Assert.assertTrue("The array should be sorted in place", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsTinyArrays() {
+        for (int length = 0; length <= 3; ++length) {
+            long[] data = TestData.randomLongs(length, length);
+            Assert.assertArrayEquals("The sorted array of " + length, TestData.sorted(data),
+                    new LongHeapSortOperation(data, 0.0).execute());
+        }
+    }
+
+    public static void testSortsWithEveryArity() {
+        for (int arity = 2; arity <= 8; ++arity) {
+            // Sizes around a full heap level, where the last parent has fewer children
+            for (int length = arity * arity - 1; length <= arity * arity + 1; ++length) {
+                long[] data = TestData.randomLongs(length, arity);
+                Assert.assertArrayEquals("The sorted array of arity " + arity + " and length " + length,
+                        TestData.sorted(data), new LongHeapSortOperation(data, 0.0, arity).execute());
+            }
+            long[] data = TestData.randomLongs(5000, arity);
+            Assert.assertArrayEquals("The sorted array of arity " + arity, TestData.sorted(data),
+                    new LongHeapSortOperation(data, 0.0, arity).execute());
+        }
+    }
+
+    public static void testUnaryHeapIsRejected() {
+        try {
+            new LongHeapSortOperation(new long[1], 0.0, 1);
+            Assert.fail("The arity should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    public static void testFailsAsScheduled() {
+        FaultSchedule.Stream faults = FaultSchedule.seeded(1).stream("failing", new ConstantRateFailureModel(1.0));
+        try {
+            new LongHeapSortOperation(TestData.randomLongs(100, 1), faults, HeapSortOperation.DEFAULT_ARITY)
+                    .execute();
+            Assert.fail("The first access should fail.");
+        } catch (MemoryAccessFailureException expected) {
+            // Expected
+        }
+    }
+
+    public static void testStopsOnceCancelled() {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        try {
+            new LongHeapSortOperation(TestData.randomLongs(100, 1), 0.0).execute(cancellationToken);
+            Assert.fail("A cancelled sort should stop.");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+    }
+
+    public static void testInvalidProbabilityIsRejected() {
+        try {
+            new LongHeapSortOperation(new long[1], 1.5);
+            Assert.fail("The probability should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tests the {@link NativeIntroSortOperation}. Needs the "introsort" native library on the library path.
+ */
+public class NativeIntroSortOperationTest {
+
+    public static void testSortsThroughACopy() {
+        int[] data = TestData.randomInts(10000, 1);
+        int[] expected = TestData.sorted(data);
+
+        int[] result = new NativeIntroSortOperation(data, 0.0).execute();
+
+        Assert.assertTrue("The sorted copy should be copied back into the array", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsInPlace() {
+        int[] data = TestData.randomInts(10000, 1);
+        int[] expected = TestData.sorted(data);
+
+        int[] result = new NativeIntroSortOperation(data, 0.0, true).execute();
+
+        Assert.assertTrue("The array should be sorted in place", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsDuplicatesAndTinyArrays() {
+        int[] duplicates = TestData.randomDuplicates(10000, 1);
+        Assert.assertArrayEquals("The sorted duplicates", TestData.sorted(duplicates),
+                new NativeIntroSortOperation(duplicates, 0.0).execute());
+        for (int length = 0; length <= 3; ++length) {
+            int[] data = TestData.randomInts(length, length);
+            Assert.assertArrayEquals("The sorted array of " + length, TestData.sorted(data),
+                    new NativeIntroSortOperation(data, 0.0).execute());
+        }
+    }
+
+    public static void testSortsPresortedInputs() {
+        int length = 10000;
+        int[] ascending = new int[length];
+        int[] descending = new int[length];
+        int[] organPipe = new int[length];
+        for (int i = 0; i < length; ++i) {
+            ascending[i] = i;
+            descending[i] = length - i;
+            organPipe[i] = Math.min(i, length - i);
+        }
+        for (int[] data : new int[][] {ascending, descending, organPipe}) {
+            Assert.assertArrayEquals("The sorted array", TestData.sorted(data),
+                    new NativeIntroSortOperation(data, 0.0).execute());
+        }
+    }
+
+    public static void testFailsAsScheduled() {
+        FaultSchedule.Stream faults = FaultSchedule.seeded(1).stream("failing", new ConstantRateFailureModel(1.0));
+        int[] data = TestData.randomInts(100, 1);
+        int[] original = data.clone();
+        try {
+            new NativeIntroSortOperation(data, faults, false).execute();
+            Assert.fail("The first access should fail.");
+        } catch (MemoryAccessFailureException expected) {
+            // Expected
+        }
+        Assert.assertArrayEquals("A failed sort of a copy should leave the input untouched", original, data);
+    }
+
+    public static void testStopsOnceCancelled() {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        try {
+            new NativeIntroSortOperation(TestData.randomInts(100, 1), 0.0).execute(cancellationToken);
+            Assert.fail("A cancelled sort should stop.");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+    }
+
+    public static void testCancelledSortOfACopyLeavesTheInputUntouched() {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        int[] data = TestData.randomInts(100, 1);
+        int[] original = data.clone();
+        try {
+            new NativeIntroSortOperation(data, 0.0, false).execute(cancellationToken);
+            Assert.fail("A cancelled sort should stop.");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+        Assert.assertArrayEquals("A cancelled sort of a copy should leave the input untouched", original, data);
+    }
+
+    public static void testInvalidProbabilityIsRejected() {
+        try {
+            new NativeIntroSortOperation(new int[1], 1.5);
+            Assert.fail("The probability should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests the {@link ParallelMergeSortOperation}.
+ */
+public class ParallelMergeSortOperationTest {
+    private static final int[] CUTOFFS = {1, 7, 64, ParallelMergeSortOperation.DEFAULT_SEQUENTIAL_CUTOFF};
+
+    public static void testSortsInPlace() {
+        int[] data = TestData.randomInts(10000, 1);
+        int[] expected = TestData.sorted(data);
+
+        int[] result = new ParallelMergeSortOperation(data, 0.0).execute();
+
+        Assert.assertTrue("The array should be sorted in place", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsWithEveryCutoff() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int cutoff : CUTOFFS) {
+                // Odd sizes, so that the halves and the merged ranges are uneven
+                for (int length : new int[] {0, 1, 2, 3, 17, 1001, 20011}) {
+                    int[] data = TestData.randomInts(length, cutoff);
+                    Assert.assertArrayEquals("The sorted array of cutoff " + cutoff + " and length " + length,
+                            TestData.sorted(data), new ParallelMergeSortOperation(data, 0.0, pool, cutoff).execute());
+                }
+                int[] duplicates = TestData.randomDuplicates(5000, cutoff);
+                Assert.assertArrayEquals("The sorted duplicates of cutoff " + cutoff, TestData.sorted(duplicates),
+                        new ParallelMergeSortOperation(duplicates, 0.0, pool, cutoff).execute());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void testFailsAsScheduled() {
+        FaultSchedule.Stream faults = FaultSchedule.seeded(1).stream("failing", new ConstantRateFailureModel(1.0));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new ParallelMergeSortOperation(TestData.randomInts(10000, 1), faults, pool, 64).execute();
+            Assert.fail("The first access should fail.");
+        } catch (MemoryAccessFailureException expected) {
+            // Expected
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static void testStopsOnceCancelled() {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        try {
+            new ParallelMergeSortOperation(TestData.randomInts(10000, 1), 0.0).execute(cancellationToken);
+            Assert.fail("A cancelled sort should stop.");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+    }
+
+    public static void testInvalidArgumentsAreRejected() {
+        try {
+            new ParallelMergeSortOperation(new int[1], 0.0, null, 64);
+            Assert.fail("The pool should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        try {
+            new ParallelMergeSortOperation(new int[1], 0.0, ForkJoinPool.commonPool(), 0);
+            Assert.fail("The cutoff should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+        try {
+            new ParallelMergeSortOperation(new int[1], 1.5);
+            Assert.fail("The probability should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests the {@link PartitionedSortOperation}, including retrying only the chunks that failed.
+ */
+public class PartitionedSortOperationTest {
+    private static final int CHUNK_SIZE = 100;
+
+    public static void testSortsAcrossChunks() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // Uneven last chunks, a chunk per element, and a single chunk
+            for (int chunkSize : new int[] {1, 7, CHUNK_SIZE, 1000, 5000}) {
+                int[] data = TestData.randomInts(1000, chunkSize);
+                int[] original = data.clone();
+
+                int[] result = new PartitionedSortOperation(data, chunkSize, 1, executor, new ChunkSorter())
+                        .execute();
+
+                Assert.assertArrayEquals("The sorted array of chunk size " + chunkSize, TestData.sorted(data),
+                        result);
+                Assert.assertArrayEquals("The input should be left untouched", original, data);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void testRetriesOnlyFailedChunks() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            int[] data = TestData.randomInts(5 * CHUNK_SIZE + CHUNK_SIZE / 2, 1);
+            // The second and fourth chunks fail once, and the last one twice
+            ChunkSorter chunkSorter = new ChunkSorter((long) CHUNK_SIZE, 3L * CHUNK_SIZE, 5L * CHUNK_SIZE,
+                    5L * CHUNK_SIZE);
+
+            int[] result = new PartitionedSortOperation(data, CHUNK_SIZE, 3, executor, chunkSorter).execute();
+
+            Assert.assertArrayEquals("The sorted array", TestData.sorted(data), result);
+            for (int chunk = 0; chunk <= 5; ++chunk) {
+                long offset = (long) chunk * CHUNK_SIZE;
+                int expectedAttempts = chunk == 5 ? 3 : (chunk == 1 || chunk == 3 ? 2 : 1);
+                Assert.assertEquals("The attempts of chunk " + chunk, expectedAttempts,
+                        (long) chunkSorter.getAttempts(offset));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void testFailsOnceAChunkIsOutOfAttempts() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            ChunkSorter chunkSorter = new ChunkSorter((long) CHUNK_SIZE, (long) CHUNK_SIZE);
+            try {
+                new PartitionedSortOperation(TestData.randomInts(3 * CHUNK_SIZE, 1), CHUNK_SIZE, 2, executor,
+                        chunkSorter).execute();
+                Assert.fail("The second chunk should run out of attempts.");
+            } catch (RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException expected) {
+                // Expected
+            }
+            Assert.assertEquals("The attempts of the failing chunk", 2, (long) chunkSorter.getAttempts(CHUNK_SIZE));
+            Assert.assertEquals("The attempts of a sorted chunk", 1, (long) chunkSorter.getAttempts(0));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static void testInvalidArgumentsAreRejected() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            int[][] sizes = {{0, 1}, {1, 0}};
+            for (int[] size : sizes) {
+                try {
+                    new PartitionedSortOperation(new int[1], size[0], size[1], executor, new ChunkSorter());
+                    Assert.fail("The sizes " + Arrays.toString(size) + " should be rejected.");
+                } catch (IllegalArgumentException expected) {
+                    // Expected
+                }
+            }
+            try {
+                new PartitionedSortOperation(new int[1], 1, 1, null, new ChunkSorter());
+                Assert.fail("The executor should be rejected.");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Sorts the chunks, counting the attempts per offset, and fails the recovery block of an offset once for every
+     * time it's listed.
+     */
+    private static class ChunkSorter implements OperationFactory<int[]> {
+        private final List<Long> failures;
+        private final Map<Long, Integer> attempts = new HashMap<>();
+
+        public ChunkSorter(Long... failingOffsets) {
+            this.failures = Collections.synchronizedList(new ArrayList<>(Arrays.asList(failingOffsets)));
+        }
+
+        public synchronized int getAttempts(long offset) {
+            Integer count = attempts.get(offset);
+            return count == null ? 0 : count;
+        }
+
+        @Override
+        public Operation<int[]> create(final int[] input, long offset) {
+            synchronized (this) {
+                Integer count = attempts.get(offset);
+                attempts.put(offset, count == null ? 1 : count + 1);
+            }
+            final boolean fails = failures.remove(Long.valueOf(offset));
+            return new Operation<int[]>() {
+                @Override
+                public int[] execute() {
+                    if (fails) {
+                        throw new RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException();
+                    }
+                    return TestData.sorted(input);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tests the {@link RadixSortOperation}.
+ */
+public class RadixSortOperationTest {
+
+    public static void testSortsInPlace() {
+        int[] data = TestData.randomInts(10000, 1);
+        int[] expected = TestData.sorted(data);
+
+        int[] result = new RadixSortOperation(data, 0.0).execute();
+
+        Assert.assertTrue("The array should be sorted in place", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsNegativeInts() {
+        int[] data = {3, -1, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, -256, 255, -1, 1, Integer.MIN_VALUE + 1};
+        int[] expected = TestData.sorted(data);
+        Assert.assertArrayEquals("The sorted array", expected, new RadixSortOperation(data, 0.0).execute());
+    }
+
+    public static void testSortsWithElevenBitDigits() {
+        // 3 passes, so the result ends up in the scratch array and is copied back
+        int[] data = TestData.randomInts(10000, 11);
+        int[] expected = TestData.sorted(data);
+
+        int[] result = new RadixSortOperation(data, 0.0, 11).execute();
+
+        Assert.assertTrue("The array should be sorted in place", result == data);
+        Assert.assertArrayEquals("The sorted array", expected, result);
+    }
+
+    public static void testSortsWithEveryDigitSize() {
+        for (int digitBits = 1; digitBits <= 16; ++digitBits) {
+            int[] data = TestData.randomInts(2000, digitBits);
+            Assert.assertArrayEquals("The sorted array of " + digitBits + " bit digits", TestData.sorted(data),
+                    new RadixSortOperation(data, 0.0, digitBits).execute());
+            int[] duplicates = TestData.randomDuplicates(2000, digitBits);
+            Assert.assertArrayEquals("The sorted duplicates of " + digitBits + " bit digits",
+                    TestData.sorted(duplicates), new RadixSortOperation(duplicates, 0.0, digitBits).execute());
+        }
+    }
+
+    public static void testSortsEqualAndTinyArrays() {
+        // Every pass is skipped
+        int[] equal = {-5, -5, -5, -5};
+        Assert.assertArrayEquals("The equal array", new int[] {-5, -5, -5, -5},
+                new RadixSortOperation(equal, 0.0, 11).execute());
+        for (int length = 0; length <= 2; ++length) {
+            int[] data = TestData.randomInts(length, length);
+            Assert.assertArrayEquals("The sorted array of " + length, TestData.sorted(data),
+                    new RadixSortOperation(data, 0.0).execute());
+        }
+    }
+
+    public static void testFailsAsScheduled() {
+        FaultSchedule.Stream faults = FaultSchedule.seeded(1).stream("failing", new ConstantRateFailureModel(1.0));
+        try {
+            new RadixSortOperation(TestData.randomInts(100, 1), faults, RadixSortOperation.DEFAULT_DIGIT_BITS)
+                    .execute();
+            Assert.fail("The first access should fail.");
+        } catch (MemoryAccessFailureException expected) {
+            // Expected
+        }
+    }
+
+    public static void testStopsOnceCancelled() {
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+        try {
+            new RadixSortOperation(TestData.randomInts(100, 1), 0.0).execute(cancellationToken);
+            Assert.fail("A cancelled sort should stop.");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+    }
+
+    public static void testInvalidDigitSizesAreRejected() {
+        for (int digitBits : new int[] {0, 17}) {
+            try {
+                new RadixSortOperation(new int[1], 0.0, digitBits);
+                Assert.fail("The digit size " + digitBits + " should be rejected.");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link RecoveryBlocksExecutor} in its execution modes, blocking and asynchronous.
+ */
+public class RecoveryBlocksExecutorTest {
+    private static final long TIME_LIMIT_MILLISECONDS = 10000;
+    // Far below the run time of the slow variants, so a test can tell that it didn't wait for them
+    private static final long FAST_MILLISECONDS = 2000;
+    private static final AcceptanceTest<Integer> POSITIVE = new AcceptanceTest<Integer>() {
+        @Override
+        public boolean testResult(Integer result) {
+            return result > 0;
+        }
+    };
+
+    public static void testSequentialFallsBackToTheBackup() {
+        TestVariant primary = TestVariant.failing("sequential primary");
+        TestVariant backup = new TestVariant("sequential backup", 0, 2);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(TIME_LIMIT_MILLISECONDS, POSITIVE,
+                primary, backup);
+
+        Assert.assertEquals("The result", 2, (int) executor.execute());
+    }
+
+    public static void testTimedOutVariantFallsBackToTheBackup() {
+        TestVariant primary = new TestVariant("timed out primary", 60000, 1);
+        TestVariant backup = new TestVariant("timed out backup", 0, 2);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(100, POSITIVE, primary, backup);
+
+        long startNanos = System.nanoTime();
+        Assert.assertEquals("The result", 2, (int) executor.execute());
+        assertFasterThan(FAST_MILLISECONDS, startNanos);
+        Assert.assertTrue("The timed out primary should be cancelled", primary.awaitCancelled());
+    }
+
+    public static void testRaceTakesTheFirstAcceptableResult() {
+        TestVariant primary = new TestVariant("race primary", 60000, 1);
+        TestVariant backup = new TestVariant("race backup", 0, 2);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) primary)
+                .addBackupVariants(backup)
+                .setExecutionMode(RecoveryBlocksExecutor.ExecutionMode.CONCURRENT)
+                .build();
+
+        long startNanos = System.nanoTime();
+        Assert.assertEquals("The result", 2, (int) executor.execute());
+        assertFasterThan(FAST_MILLISECONDS, startNanos);
+        // The primary might not have got a worker before the backup won
+        Assert.assertTrue("The losing primary should be cancelled", !primary.started || primary.awaitCancelled());
+    }
+
+    public static void testRaceSkipsUnacceptableResults() {
+        TestVariant primary = new TestVariant("unacceptable race primary", 200, 1);
+        TestVariant backup = new TestVariant("unacceptable race backup", 0, -1);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) primary)
+                .addBackupVariants(backup)
+                .setExecutionMode(RecoveryBlocksExecutor.ExecutionMode.CONCURRENT)
+                .build();
+
+        Assert.assertEquals("The result", 1, (int) executor.execute());
+    }
+
+    public static void testTimedOutVariantHoldsUpTheBackupUntilItReturns() {
+        StubbornVariant primary = new StubbornVariant("stubborn primary", 300);
+        TestVariant backup = new TestVariant("stubborn backup", 0, 2);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(50, POSITIVE, primary, backup);
+
+        Assert.assertEquals("The result", 2, (int) executor.execute());
+        Assert.assertTrue("The backup shouldn't start while the primary still runs",
+                primary.returnNanos != 0 && backup.startNanos >= primary.returnNanos);
+    }
+
+    public static void testHedgedStartsTheBackupOnceThePrimaryRunsLate() {
+        TestVariant primary = new TestVariant("late hedged primary", 60000, 1);
+        TestVariant backup = new TestVariant("late hedged backup", 0, 2);
+        LatencyHistory latencyHistory = new LatencyHistory(8, 1);
+        latencyHistory.record(primary, 0, TimeUnit.MILLISECONDS.toNanos(10));
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) primary)
+                .addBackupVariants(backup)
+                .setExecutionMode(RecoveryBlocksExecutor.ExecutionMode.HEDGED)
+                .setHedging(latencyHistory, 0.95)
+                .build();
+
+        long startNanos = System.nanoTime();
+        Assert.assertEquals("The result", 2, (int) executor.execute());
+        assertFasterThan(FAST_MILLISECONDS, startNanos);
+        Assert.assertTrue("The late primary should be cancelled", primary.awaitCancelled());
+    }
+
+    public static void testHedgedWithoutHistoryRunsSequentially() {
+        TestVariant primary = new TestVariant("unhedged primary", 100, 1);
+        TestVariant backup = new TestVariant("unhedged backup", 0, 2);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) primary)
+                .addBackupVariants(backup)
+                .setExecutionMode(RecoveryBlocksExecutor.ExecutionMode.HEDGED)
+                .setHedging(new LatencyHistory(8, 1), 0.95)
+                .build();
+
+        Assert.assertEquals("The result", 1, (int) executor.execute());
+        Assert.assertTrue("The backup shouldn't be started", !backup.started);
+    }
+
+    public static void testAsyncDoesNotBlock() throws InterruptedException, ExecutionException {
+        TestVariant primary = new TestVariant("async primary", 300, 1);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(TIME_LIMIT_MILLISECONDS, POSITIVE,
+                primary);
+
+        CompletableFuture<Integer> result = executor.executeAsync(null);
+        Assert.assertTrue("The future shouldn't be done while the variant runs", !result.isDone());
+        Assert.assertEquals("The result", 1, (int) result.get());
+    }
+
+    public static void testAsyncFailsOnceAllVariantsFailed() throws InterruptedException {
+        final List<String> failureReports = new CopyOnWriteArrayList<>();
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(TIME_LIMIT_MILLISECONDS, POSITIVE,
+                TestVariant.failing("failing async primary"), new TestVariant("unacceptable async backup", 0, -1));
+
+        CompletableFuture<Integer> result = executor.executeAsync(
+                new RecoveryBlocksExecutor.VariantFailureListener() {
+                    @Override
+                    public void onVariantFailure(Variant<?> failedVariant, String failureReport) {
+                        failureReports.add(failureReport);
+                    }
+                });
+        try {
+            result.get();
+            Assert.fail("The execution should fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("The execution should fail with RecoveryBlocksSystemFailedException",
+                    e.getCause() instanceof RecoveryBlocksExecutor.RecoveryBlocksSystemFailedException);
+        }
+        Assert.assertEquals("The number of failure reports", 2, failureReports.size());
+    }
+
+    public static void testAsyncCancellationCancelsTheVariants() {
+        TestVariant primary = new TestVariant("cancelled async primary", 60000, 1);
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(TIME_LIMIT_MILLISECONDS, POSITIVE,
+                primary);
+
+        CompletableFuture<Integer> result = executor.executeAsync(null);
+        Assert.assertTrue("The primary should start", primary.awaitStarted());
+        result.cancel(true);
+        Assert.assertTrue("The running primary should be cancelled", primary.awaitCancelled());
+    }
+
+    public static void testThrowingFailureListenerDoesNotStopTheExecution()
+            throws InterruptedException, ExecutionException {
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor<>(TIME_LIMIT_MILLISECONDS, POSITIVE,
+                TestVariant.failing("listened primary"), new TestVariant("listened backup", 0, 2));
+
+        CompletableFuture<Integer> result = executor.executeAsync(
+                new RecoveryBlocksExecutor.VariantFailureListener() {
+                    @Override
+                    public void onVariantFailure(Variant<?> failedVariant, String failureReport) {
+                        throw new IllegalStateException("A broken listener.");
+                    }
+                });
+        Assert.assertEquals("The result", 2, (int) result.get());
+    }
+
+    public static void testAsyncRejectingBackendFailsTheFuture() throws InterruptedException {
+        VariantWorkerPool pool = new VariantWorkerPool(1, 1);
+        pool.shutdown();
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) new TestVariant("rejected async primary", 0, 1))
+                .setExecutionBackend(pool)
+                .build();
+
+        try {
+            executor.executeAsync(null).get();
+            Assert.fail("The execution should fail.");
+        } catch (ExecutionException e) {
+            Assert.assertTrue("The execution should fail with the backend's exception",
+                    e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    public static void testRejectingBackendFailsTheExecution() {
+        VariantWorkerPool pool = new VariantWorkerPool(1, 1);
+        pool.shutdown();
+        RecoveryBlocksExecutor<Integer> executor = new RecoveryBlocksExecutor.Builder<>(TIME_LIMIT_MILLISECONDS,
+                POSITIVE, (Variant<Integer>) new TestVariant("rejected primary", 0, 1))
+                .setExecutionBackend(pool)
+                .build();
+
+        try {
+            executor.execute();
+            Assert.fail("The execution should fail.");
+        } catch (RejectedExecutionException expected) {
+            // Expected
+        }
+    }
+
+    private static void assertFasterThan(long milliseconds, long startNanos) {
+        long elapsedMilliseconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        Assert.assertTrue(String.format("Took %d ms, should be below %d ms", elapsedMilliseconds, milliseconds),
+                elapsedMilliseconds < milliseconds);
+    }
+
+    /**
+     * A variant that returns a fixed result after a while, or fails. Polls its {@link CancellationToken} while it
+     * waits.
+     */
+    private static class TestVariant implements CancellableOperation<Integer>, Variant<Integer> {
+        private static final long AWAIT_MILLISECONDS = 5000;
+
+        private final String name;
+        private final long runTimeMilliseconds;
+        private final Integer result;
+        private volatile boolean started = false;
+        private volatile long startNanos = 0;
+        private volatile boolean cancelled = false;
+
+        public TestVariant(String name, long runTimeMilliseconds, Integer result) {
+            this.name = name;
+            this.runTimeMilliseconds = runTimeMilliseconds;
+            this.result = result;
+        }
+
+        public static TestVariant failing(String name) {
+            return new TestVariant(name, 0, null);
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Integer execute() {
+            return execute(new CancellationToken());
+        }
+
+        @Override
+        public Integer execute(CancellationToken cancellationToken) {
+            startNanos = System.nanoTime();
+            started = true;
+            long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runTimeMilliseconds);
+            while (System.nanoTime() < endNanos) {
+                if (cancellationToken.isCancelled()) {
+                    cancelled = true;
+                    cancellationToken.throwIfCancelled();
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    cancelled = true;
+                    throw new IllegalStateException("Interrupted.");
+                }
+            }
+            if (result == null) {
+                throw new IllegalStateException("A simulated failure.");
+            }
+            return result;
+        }
+
+        public boolean awaitStarted() {
+            return await(true);
+        }
+
+        public boolean awaitCancelled() {
+            return await(false);
+        }
+
+        private boolean await(boolean start) {
+            long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AWAIT_MILLISECONDS);
+            while (!(start ? started : cancelled)) {
+                if (System.nanoTime() > endNanos) {
+                    return false;
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A variant that isn't cancellable, and ignores interrupts. Keeps running for a while, then returns 1.
+     */
+    private static class StubbornVariant implements Variant<Integer> {
+        private final String name;
+        private final long runTimeMilliseconds;
+        private volatile long returnNanos = 0;
+
+        public StubbornVariant(String name, long runTimeMilliseconds) {
+            this.name = name;
+            this.runTimeMilliseconds = runTimeMilliseconds;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Integer execute() {
+            long endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(runTimeMilliseconds);
+            while (System.nanoTime() < endNanos) {
+                Thread.onSpinWait();
+            }
+            returnNanos = System.nanoTime();
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Tests the memory and disk tiers of the {@link ResultCache}.
+ */
+public class ResultCacheTest {
+    // The estimated memory use of a cached result of 10 elements
+    private static final long ENTRY_BYTES = 128 + 4 * 10;
+
+    public static void testHitsReturnCopies() throws IOException {
+        ResultCache cache = new ResultCache(1 << 20, null, null);
+        SortingOperation operation = new SortingOperation();
+
+        int[] first = cache.execute(input(1), operation.of(input(1)));
+        first[0] = -1;
+        int[] second = cache.execute(input(1), operation.of(input(1)));
+
+        Assert.assertEquals("The number of executions", 1, operation.executions);
+        Assert.assertEquals("The number of hits", 1, cache.getHitCount());
+        Assert.assertArrayEquals("The cached result", sorted(input(1)), second);
+    }
+
+    public static void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        ResultCache cache = new ResultCache(2 * ENTRY_BYTES, null, null);
+        SortingOperation operation = new SortingOperation();
+
+        cache.execute(input(1), operation.of(input(1)));
+        cache.execute(input(2), operation.of(input(2)));
+        // Makes input 2 the least recently used one
+        cache.execute(input(1), operation.of(input(1)));
+        cache.execute(input(3), operation.of(input(3)));
+        Assert.assertEquals("The memory use", 2 * ENTRY_BYTES, cache.getMemoryBytes());
+
+        cache.execute(input(1), operation.of(input(1)));
+        Assert.assertEquals("The executions after a hit", 3, operation.executions);
+        cache.execute(input(2), operation.of(input(2)));
+        Assert.assertEquals("The executions after a miss of the evicted entry", 4, operation.executions);
+    }
+
+    public static void testUnacceptableResultsAreNotCached() throws IOException {
+        ResultCache cache = new ResultCache(1 << 20, null, new AcceptanceTest<int[]>() {
+            @Override
+            public boolean testResult(int[] result) {
+                return false;
+            }
+        });
+        SortingOperation operation = new SortingOperation();
+
+        cache.execute(input(1), operation.of(input(1)));
+        cache.execute(input(1), operation.of(input(1)));
+
+        Assert.assertEquals("The number of executions", 2, operation.executions);
+        Assert.assertEquals("The memory use", 0, cache.getMemoryBytes());
+    }
+
+    public static void testDiskEntriesRoundTrip() throws IOException {
+        Path directory = Files.createTempDirectory("result-cache");
+        try {
+            new ResultCache(0, directory, null).execute(input(1), new SortingOperation().of(input(1)));
+
+            ResultCache cache = new ResultCache(1 << 20, directory, null);
+            SortingOperation operation = new SortingOperation();
+            int[] result = cache.execute(input(1), operation.of(input(1)));
+
+            Assert.assertEquals("The number of executions", 0, operation.executions);
+            Assert.assertEquals("The number of disk hits", 1, cache.getDiskHitCount());
+            Assert.assertArrayEquals("The result read from the disk", sorted(input(1)), result);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    public static void testCorruptedDiskEntriesAreMisses() throws IOException {
+        Path directory = Files.createTempDirectory("result-cache");
+        try {
+            new ResultCache(0, directory, null).execute(input(1), new SortingOperation().of(input(1)));
+            Path entry = onlyFileIn(directory);
+            byte[] bytes = Files.readAllBytes(entry);
+            // Flips the lowest bit of the last element, which keeps the result sorted
+            bytes[bytes.length - 20 - 1] ^= 1;
+            Files.write(entry, bytes);
+
+            ResultCache cache = new ResultCache(0, directory, null);
+            SortingOperation operation = new SortingOperation();
+            int[] result = cache.execute(input(1), operation.of(input(1)));
+
+            Assert.assertEquals("The number of executions", 1, operation.executions);
+            Assert.assertArrayEquals("The recomputed result", sorted(input(1)), result);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    public static void testDiskEntriesWithABadLengthAreMisses() throws IOException {
+        // Negative, too large to allocate, and one more than the entry holds
+        int[] badLengths = {-1, Integer.MAX_VALUE, 11};
+        for (int badLength : badLengths) {
+            Path directory = Files.createTempDirectory("result-cache");
+            try {
+                new ResultCache(0, directory, null).execute(input(1), new SortingOperation().of(input(1)));
+                Path entry = onlyFileIn(directory);
+                byte[] bytes = Files.readAllBytes(entry);
+                // After the magic number and the input's key
+                ByteBuffer.wrap(bytes).putInt(4 + 20, badLength);
+                Files.write(entry, bytes);
+
+                ResultCache cache = new ResultCache(0, directory, null);
+                SortingOperation operation = new SortingOperation();
+                int[] result = cache.execute(input(1), operation.of(input(1)));
+
+                Assert.assertEquals("The number of executions with a length of " + badLength, 1,
+                        operation.executions);
+                Assert.assertArrayEquals("The recomputed result", sorted(input(1)), result);
+            } finally {
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    public static void testMisplacedDiskEntriesAreMisses() throws IOException {
+        Path directory = Files.createTempDirectory("result-cache");
+        try {
+            new ResultCache(0, directory, null).execute(input(1), new SortingOperation().of(input(1)));
+            Path entry = onlyFileIn(directory);
+            new ResultCache(0, directory, null).execute(input(2), new SortingOperation().of(input(2)));
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    if (!file.equals(entry)) {
+                        // The entry of input 2 now holds the result of input 1
+                        Files.copy(entry, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+
+            ResultCache cache = new ResultCache(0, directory, null);
+            SortingOperation operation = new SortingOperation();
+            int[] result = cache.execute(input(2), operation.of(input(2)));
+
+            Assert.assertEquals("The number of executions", 1, operation.executions);
+            Assert.assertArrayEquals("The recomputed result", sorted(input(2)), result);
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * An unsorted input of 10 elements, different for every {@code seed}.
+     */
+    private static int[] input(int seed) {
+        int[] input = new int[10];
+        for (int i = 0; i < input.length; ++i) {
+            input[i] = (input.length - i) * 1000 + seed;
+        }
+        return input;
+    }
+
+    private static int[] sorted(int[] input) {
+        int[] sorted = input.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static Path onlyFileIn(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            return files.iterator().next();
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Creates sorting operations, and counts how many of them were executed.
+     */
+    private static class SortingOperation {
+        private int executions = 0;
+
+        public Operation<int[]> of(final int[] input) {
+            return new Operation<int[]>() {
+                @Override
+                public int[] execute() {
+                    ++executions;
+                    return sorted(input);
+                }
+            };
+        }
+    }
+}
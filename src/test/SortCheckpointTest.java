@@ -0,0 +1,94 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+/**
+ * Tests the {@link SortCheckpoint}, including rejecting the snapshots that can't be verified.
+ */
+public class SortCheckpointTest {
+    private static final int[] INPUT = {5, 3, 9, 1, 7};
+
+    public static void testRestoresAValidCheckpoint() {
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        checkpoint.publish(new int[] {3, 1, 5, 7, 9}, 3);
+        int[] restored = new int[INPUT.length];
+
+        Assert.assertEquals("The restored suffix", 3, (long) checkpoint.restore(INPUT, restored));
+        Assert.assertArrayEquals("The restored array", new int[] {3, 1, 5, 7, 9}, restored);
+    }
+
+    public static void testPublishingCopiesTheArray() {
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        int[] data = {3, 1, 5, 7, 9};
+        checkpoint.publish(data, 3);
+        // The publisher carries on sorting
+        data[0] = 1;
+        data[1] = 3;
+        int[] restored = new int[INPUT.length];
+
+        Assert.assertEquals("The restored suffix", 3, (long) checkpoint.restore(INPUT, restored));
+        Assert.assertArrayEquals("The restored array", new int[] {3, 1, 5, 7, 9}, restored);
+    }
+
+    public static void testWithoutACheckpointNothingIsRestored() {
+        Assert.assertEquals("The restored suffix", INPUT.length,
+                (long) new SortCheckpoint().restore(INPUT, new int[INPUT.length]));
+
+        // Nothing sorted yet
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        checkpoint.publish(new int[] {3, 5, 9, 1, 7}, INPUT.length);
+        Assert.assertEquals("The restored suffix of an empty one", INPUT.length,
+                (long) checkpoint.restore(INPUT, new int[INPUT.length]));
+    }
+
+    public static void testRejectsAnUnsortedSuffix() {
+        assertRejected("An unsorted suffix", new int[] {3, 1, 5, 9, 7}, 2);
+    }
+
+    public static void testRejectsASuffixWithSmallerElementsThanThePrefix() {
+        assertRejected("A suffix smaller than the prefix", new int[] {3, 7, 5, 1, 9}, 3);
+    }
+
+    public static void testRejectsASnapshotOfOtherElements() {
+        assertRejected("A lost element", new int[] {3, 1, 5, 7, 7}, 3);
+        assertRejected("A changed element", new int[] {3, 1, 5, 7, 10}, 3);
+    }
+
+    public static void testRejectsASnapshotOfAnotherLength() {
+        assertRejected("A shorter snapshot", new int[] {1, 3, 5, 7}, 2);
+    }
+
+    public static void testInvalidArgumentsAreRejected() {
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        for (int sortedFrom : new int[] {-1, INPUT.length + 1}) {
+            try {
+                checkpoint.publish(INPUT.clone(), sortedFrom);
+                Assert.fail("The sorted suffix from " + sortedFrom + " should be rejected.");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+        try {
+            checkpoint.restore(INPUT, new int[INPUT.length - 1]);
+            Assert.fail("The destination should be rejected.");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    private static void assertRejected(String message, int[] snapshot, int sortedFrom) {
+        SortCheckpoint checkpoint = new SortCheckpoint();
+        checkpoint.publish(snapshot, sortedFrom);
+        Assert.assertEquals(message + " should be rejected", INPUT.length,
+                (long) checkpoint.restore(INPUT, new int[INPUT.length]));
+    }
+}
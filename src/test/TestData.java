@@ -0,0 +1,68 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The inputs of the sort tests, and their expected outputs.
+ */
+public final class TestData {
+    private TestData() {
+    }
+
+    /**
+     * Random ints over the whole range, including negative ones, and the same ones for the same {@code seed}.
+     */
+    public static int[] randomInts(int count, long seed) {
+        Random random = new Random(seed);
+        int[] ints = new int[count];
+        for (int i = 0; i < count; ++i) {
+            ints[i] = random.nextInt();
+        }
+        return ints;
+    }
+
+    /**
+     * Random ints from a small range, so that most of them are duplicates.
+     */
+    public static int[] randomDuplicates(int count, long seed) {
+        Random random = new Random(seed);
+        int[] ints = new int[count];
+        for (int i = 0; i < count; ++i) {
+            ints[i] = random.nextInt(16) - 8;
+        }
+        return ints;
+    }
+
+    public static long[] randomLongs(int count, long seed) {
+        Random random = new Random(seed);
+        long[] longs = new long[count];
+        for (int i = 0; i < count; ++i) {
+            longs[i] = random.nextLong();
+        }
+        return longs;
+    }
+
+    public static int[] sorted(int[] input) {
+        int[] sorted = input.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    public static long[] sorted(long[] input) {
+        long[] sorted = input.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
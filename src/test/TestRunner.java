@@ -0,0 +1,65 @@
+/**
+ Copyright 2016 Udey Rishi
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+ http://www.apache.org/licenses/LICENSE-2.0
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+ */
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A minimal test runner, so that the tests need nothing but the JDK. Runs every public static no-argument method
+ * whose name starts with "test", of every test class given on the command line, and exits with 1 if any of them
+ * threw.
+ */
+public class TestRunner {
+    public static void main(String[] args) throws ClassNotFoundException {
+        int passed = 0;
+        int failed = 0;
+        for (String className : args) {
+            Method[] methods = Class.forName(className).getMethods();
+            // In a stable order, since getMethods() doesn't have one
+            Arrays.sort(methods, new Comparator<Method>() {
+                @Override
+                public int compare(Method m1, Method m2) {
+                    return m1.getName().compareTo(m2.getName());
+                }
+            });
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || !Modifier.isStatic(method.getModifiers()) ||
+                        method.getParameterTypes().length != 0) {
+                    continue;
+                }
+
+                String testName = className + "." + method.getName();
+                try {
+                    method.invoke(null);
+                    ++passed;
+                    System.out.println("PASS " + testName);
+                } catch (InvocationTargetException e) {
+                    ++failed;
+                    System.out.println("FAIL " + testName);
+                    e.getCause().printStackTrace(System.out);
+                } catch (IllegalAccessException e) {
+                    ++failed;
+                    System.out.println("FAIL " + testName + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println(String.format("%d test(s) passed, %d failed.", passed, failed));
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}